@@ -24,5 +24,9 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_AMOUNT_CHANGED = "订单金额已变化，请刷新后重新下单";
+    public static final String GOODS_NOT_FOUND = "菜品或套餐不存在";
+    public static final String GOODS_DISABLED = "菜品或套餐已停售";
+    public static final String GOODS_NOT_ON_SALE = "购物车中有已下架的菜品或套餐";
 
 }
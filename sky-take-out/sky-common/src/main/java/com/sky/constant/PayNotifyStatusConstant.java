@@ -0,0 +1,16 @@
+package com.sky.constant;
+
+/**
+ * 支付回调处理结果，同时也是pay_notify_log.status的取值
+ */
+public class PayNotifyStatusConstant {
+
+    //重复回调，该交易号已经处理过（不写入pay_notify_log）
+    public static final Integer DUPLICATE = 0;
+
+    //订单已由待支付改为待接单
+    public static final Integer APPLIED = 1;
+
+    //已收款但订单不是待支付状态（超时已取消、已被其他交易支付等），需要退款或人工处理
+    public static final Integer NEED_REFUND = 2;
+}
@@ -0,0 +1,17 @@
+package com.sky.exception;
+
+/**
+ * 地图服务不可用（网络异常、响应状态不是200、配额或并发超限等），与地址无法解析、超出配送范围等业务异常区分，
+ * 调用方可以据此降级而不是拒绝下单
+ */
+public class MapServiceUnavailableException extends RuntimeException {
+
+    public MapServiceUnavailableException(String msg) {
+        super(msg);
+    }
+
+    public MapServiceUnavailableException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+}
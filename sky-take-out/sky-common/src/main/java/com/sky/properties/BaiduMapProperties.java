@@ -9,5 +9,10 @@ import org.springframework.stereotype.Component;
 @Data
 public class BaiduMapProperties {
 
+    private String ak; //百度地图的访问应用（AK）
+    private String baseUrl = "https://api.map.baidu.com"; //接口地址，测试时可替换为本地的桩服务
+    private boolean enabled = false; //下单时是否校验配送范围
+    private int deliveryRange = 5000; //最大配送距离，单位米
+    private long timeoutMillis = 3000; //配送范围校验的总超时时间，超时后放行，单位毫秒
 
 }
@@ -0,0 +1,57 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ClassName: HttpClientProperties
+ * Package: com.sky.properties
+ * Description: HttpClientUtil共享连接池相关配置
+ * \sky-server\src\main\resources\application.yml
+ *    sky:
+ *      http-client:
+ *        connect-timeout-millis: 5000
+ *        read-timeout-millis: 5000
+ *        max-total: 200
+ *        max-per-route: 50
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.http-client")
+@Data
+public class HttpClientProperties {
+
+    /**
+     * 建立连接的超时时间，单位毫秒
+     */
+    private int connectTimeoutMillis = 5000;
+
+    /**
+     * 读取响应的超时时间（socket timeout），单位毫秒
+     */
+    private int readTimeoutMillis = 5000;
+
+    /**
+     * 从连接池获取连接的超时时间，单位毫秒
+     */
+    private int connectionRequestTimeoutMillis = 1000;
+
+    /**
+     * 连接池最大连接数
+     */
+    private int maxTotal = 200;
+
+    /**
+     * 每个目标主机（路由）的最大连接数
+     */
+    private int maxPerRoute = 50;
+
+    /**
+     * 服务端未返回Keep-Alive时，空闲连接保持的时间，单位秒
+     */
+    private long keepAliveSeconds = 30;
+
+}
@@ -0,0 +1,48 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ClassName: TwoLevelCacheProperties
+ * Package: com.sky.properties
+ * Description: 二级缓存（本地Caffeine L1 + Redis L2）相关配置
+ * \sky-server\src\main\resources\application.yml
+ *    sky:
+ *      cache:
+ *        local-maximum-size: 1000
+ *        local-ttl-seconds: 60
+ *        redis-ttl-seconds: 3600
+ *        topic: sky:cache:evict
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class TwoLevelCacheProperties {
+
+    /**
+     * 每个缓存的本地（L1）最大条目数
+     */
+    private long localMaximumSize = 1000;
+
+    /**
+     * 本地（L1）缓存写入后的过期时间，单位秒
+     */
+    private long localTtlSeconds = 60;
+
+    /**
+     * Redis（L2）缓存的过期时间，单位秒，小于等于0表示不过期
+     * 清空缓存只会递增版本号，旧版本的key依赖该过期时间回收，因此建议始终配置
+     */
+    private long redisTtlSeconds = 3600;
+
+    /**
+     * 跨节点失效本地缓存所使用的Redis发布订阅频道
+     */
+    private String topic = "sky:cache:evict";
+
+}
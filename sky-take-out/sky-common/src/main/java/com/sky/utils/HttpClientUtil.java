@@ -1,6 +1,8 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.HttpClientProperties;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
@@ -10,36 +12,114 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
+ * 所有请求共用一个带连接池的HttpClient，连接在请求之间保持（keep-alive）复用，避免每次请求都重新建立TCP+TLS连接
  */
+@Slf4j
 public class HttpClientUtil {
 
-    static final  int TIMEOUT_MSEC = 5 * 1000;
+    private static volatile PoolingHttpClientConnectionManager connectionManager;
+    private static volatile CloseableHttpClient httpClient;
+
+    static {
+        configure(new HttpClientProperties());
+    }
+
+    /**
+     * 按配置重新创建共享的连接池和HttpClient，应用启动时调用一次
+     *
+     * @param properties
+     */
+    public static synchronized void configure(HttpClientProperties properties) {
+        PoolingHttpClientConnectionManager newConnectionManager = new PoolingHttpClientConnectionManager();
+        newConnectionManager.setMaxTotal(properties.getMaxTotal());
+        newConnectionManager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+        // 复用空闲超过2秒的连接前先检查连接是否仍然可用
+        newConnectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeoutMillis())
+                .setConnectionRequestTimeout(properties.getConnectionRequestTimeoutMillis())
+                .setSocketTimeout(properties.getReadTimeoutMillis()).build();
+
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(properties.getKeepAliveSeconds());
+        CloseableHttpClient newHttpClient = HttpClients.custom()
+                .setConnectionManager(newConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // 服务端声明了Keep-Alive超时时使用服务端的值，否则使用配置的值
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? serverKeepAlive : keepAliveMillis;
+                })
+                // 后台线程定期清理过期和空闲的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getKeepAliveSeconds(), TimeUnit.SECONDS)
+                .build();
+
+        CloseableHttpClient oldHttpClient = httpClient;
+        connectionManager = newConnectionManager;
+        httpClient = newHttpClient;
+        if (oldHttpClient != null) {
+            try {
+                oldHttpClient.close();
+            } catch (IOException e) {
+                log.error("关闭旧的HttpClient失败", e);
+            }
+        }
+        log.info("HttpClient连接池已配置：maxTotal={}, maxPerRoute={}, connectTimeout={}ms, readTimeout={}ms",
+                properties.getMaxTotal(), properties.getMaxPerRoute(),
+                properties.getConnectTimeoutMillis(), properties.getReadTimeoutMillis());
+    }
+
+    /**
+     * 连接池统计：leased（使用中）、pending（等待连接）、available（空闲）、max（最大连接数）
+     *
+     * @return
+     */
+    public static PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
 
     /**
      * 发送GET方式请求
      * @param url
      * @param paramMap
-     * @return
+     * @return 请求失败或响应状态不是200时返回空字符串
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
-        String result = "";
-        CloseableHttpResponse response = null;
+        try{
+            return doGetOrThrow(url, paramMap);
+        }catch (Exception e){
+            e.printStackTrace();
+            return "";
+        }
+    }
 
+    /**
+     * 发送GET方式请求，网络异常或响应状态不是200时抛出IOException，调用方可以区分服务不可用和业务失败
+     * @param url
+     * @param paramMap
+     * @return
+     * @throws IOException
+     */
+    public static String doGetOrThrow(String url,Map<String,String> paramMap) throws IOException {
+        URI uri;
         try{
             URIBuilder builder = new URIBuilder(url);
             if(paramMap != null){
@@ -47,30 +127,28 @@ public class HttpClientUtil {
                     builder.addParameter(key,paramMap.get(key));
                 }
             }
-            URI uri = builder.build();
-
-            //创建GET请求
-            HttpGet httpGet = new HttpGet(uri);
+            uri = builder.build();
+        }catch (URISyntaxException e){
+            throw new IOException("请求地址错误：" + url, e);
+        }
 
-            //发送请求
-            response = httpClient.execute(httpGet);
+        //创建GET请求
+        HttpGet httpGet = new HttpGet(uri);
 
+        //发送请求
+        CloseableHttpResponse response = httpClient.execute(httpGet);
+        try{
             //判断响应状态
-            if(response.getStatusLine().getStatusCode() == 200){
-                result = EntityUtils.toString(response.getEntity(),"UTF-8");
+            int statusCode = response.getStatusLine().getStatusCode();
+            if(statusCode != 200){
+                // 读完响应体，连接才能归还连接池复用
+                EntityUtils.consume(response.getEntity());
+                throw new IOException("请求失败，响应状态：" + statusCode + "，" + url);
             }
-        }catch (Exception e){
-            e.printStackTrace();
+            return EntityUtils.toString(response.getEntity(),"UTF-8");
         }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            closeResponse(response);
         }
-
-        return result;
     }
 
     /**
@@ -81,8 +159,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -101,8 +177,6 @@ public class HttpClientUtil {
                 httpPost.setEntity(entity);
             }
 
-            httpPost.setConfig(builderRequestConfig());
-
             // 执行http请求
             response = httpClient.execute(httpPost);
 
@@ -110,11 +184,7 @@ public class HttpClientUtil {
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            closeResponse(response);
         }
 
         return resultString;
@@ -128,8 +198,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -151,8 +219,6 @@ public class HttpClientUtil {
                 httpPost.setEntity(entity);
             }
 
-            httpPost.setConfig(builderRequestConfig());
-
             // 执行http请求
             response = httpClient.execute(httpPost);
 
@@ -160,20 +226,26 @@ public class HttpClientUtil {
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            closeResponse(response);
         }
 
         return resultString;
     }
-    private static RequestConfig builderRequestConfig() {
-        return RequestConfig.custom()
-                .setConnectTimeout(TIMEOUT_MSEC)
-                .setConnectionRequestTimeout(TIMEOUT_MSEC)
-                .setSocketTimeout(TIMEOUT_MSEC).build();
+
+    /**
+     * 关闭响应，连接归还连接池，HttpClient本身不关闭
+     *
+     * @param response
+     */
+    private static void closeResponse(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
 }
@@ -0,0 +1,81 @@
+package com.sky.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClassName: SnowflakeIdGenerator
+ * Package: com.sky.utils
+ * Description: 雪花算法id生成器，用于生成订单号
+ * 结构：1位符号位(0) + 41位毫秒时间戳（相对EPOCH）+ 10位节点id + 12位序列号，同一节点生成的id严格递增
+ * 时间戳和序列号合并保存在一个AtomicLong中，通过CAS更新，不加锁：
+ * 时钟前进时序列号归零；同一毫秒内序列号加1，序列号用尽时自动进位到下一毫秒（逻辑时钟暂时领先于系统时钟）；
+ * 时钟回拨时继续沿用上一次的时间戳递增，不会产生重复或更小的id，也不会阻塞等待
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Slf4j
+public class SnowflakeIdGenerator {
+
+    // 起始时间 2024-01-01 00:00:00 UTC，41位时间戳可以使用约69年
+    public static final long EPOCH = 1704067200000L;
+
+    public static final int WORKER_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // 逻辑时钟领先系统时钟超过该值时打印告警（时钟大幅回拨或持续超过每毫秒4096个id）
+    private static final long SKEW_WARN_MILLIS = 1000;
+
+    private final long workerId;
+
+    // 高位为上一次使用的时间戳（相对EPOCH），低12位为序列号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0~" + MAX_WORKER_ID + "之间：" + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return
+     */
+    public long nextId() {
+        long current;
+        long next;
+        long now;
+        do {
+            current = state.get();
+            now = System.currentTimeMillis() - EPOCH;
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            // 时钟前进：使用新的时间戳，序列号从0开始；否则在上一次的基础上加1，序列号溢出时进位到时间戳
+            next = now > lastTimestamp ? now << SEQUENCE_BITS : current + 1;
+        } while (!state.compareAndSet(current, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        if (timestamp - now > SKEW_WARN_MILLIS) {
+            log.warn("订单号逻辑时钟领先系统时钟{}ms，可能发生了时钟回拨", timestamp - now);
+        }
+        return (timestamp << (WORKER_ID_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * 生成下一个id的字符串形式
+     *
+     * @return
+     */
+    public String nextIdStr() {
+        return Long.toString(nextId());
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+}
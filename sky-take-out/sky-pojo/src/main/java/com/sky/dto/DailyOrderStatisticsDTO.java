@@ -0,0 +1,33 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天聚合的订单统计数据
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyOrderStatisticsDTO implements Serializable {
+    //日期
+    private LocalDate date;
+
+    //营业额（当天已完成订单的总金额）
+    private Double turnover;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数（已完成）
+    private Integer validOrderCount;
+
+    //已取消订单数
+    private Integer cancelledOrderCount;
+}
@@ -0,0 +1,33 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class GoodsPriceDTO implements Serializable {
+    //菜品或套餐id
+    private Long id;
+
+    //名称
+    private String name;
+
+    //图片
+    private String image;
+
+    //单价
+    private BigDecimal price;
+
+    //每份的打包费
+    private BigDecimal packAmount;
+
+    //售卖状态 0:停售 1:起售
+    private Integer status;
+}
@@ -0,0 +1,35 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 微信支付回调通知报文，字段名为下划线风格（如 event_type、associated_data）
+ */
+@Data
+public class PayNotifyDTO implements Serializable {
+    //通知id，同一通知的重试id相同
+    private String id;
+
+    //通知类型，支付成功为 TRANSACTION.SUCCESS
+    private String eventType;
+
+    //加密的通知数据
+    private Resource resource;
+
+    @Data
+    public static class Resource implements Serializable {
+        //加密算法，AEAD_AES_256_GCM
+        private String algorithm;
+
+        //Base64编码的密文
+        private String ciphertext;
+
+        //附加数据
+        private String associatedData;
+
+        //随机串
+        private String nonce;
+    }
+}
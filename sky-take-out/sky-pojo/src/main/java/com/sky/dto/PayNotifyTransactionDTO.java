@@ -0,0 +1,20 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 微信支付回调通知解密后的交易数据，只保留业务需要的字段
+ */
+@Data
+public class PayNotifyTransactionDTO implements Serializable {
+    //商户订单号
+    private String outTradeNo;
+
+    //微信支付交易号
+    private String transactionId;
+
+    //交易状态
+    private String tradeState;
+}
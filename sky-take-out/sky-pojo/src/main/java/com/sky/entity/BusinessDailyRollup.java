@@ -0,0 +1,46 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总（按下单日期汇总订单数据，按注册日期汇总新增用户）
+ */
+@Data
+@Builder
+@Accessors(chain = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusinessDailyRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //日期
+    private LocalDate date;
+
+    //营业额（已完成订单的总金额）
+    private BigDecimal turnover;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数（已完成）
+    private Integer validOrderCount;
+
+    //已取消订单数
+    private Integer cancelledOrderCount;
+
+    //新增用户数
+    private Integer newUserCount;
+
+    //更新时间
+    private LocalDateTime updateTime;
+}
@@ -102,7 +102,7 @@ public class Orders implements Serializable {
     private LocalDateTime deliveryTime;
 
     //打包费
-    private int packAmount;
+    private BigDecimal packAmount;
 
     //餐具数量
     private int tablewareNumber;
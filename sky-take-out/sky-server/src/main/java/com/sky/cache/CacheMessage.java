@@ -0,0 +1,35 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * ClassName: CacheMessage
+ * Package: com.sky.cache
+ * Description: 二级缓存跨节点失效消息，通过Redis发布订阅广播给所有节点
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //发送消息的节点id，节点收到自己发送的消息时忽略
+    private String nodeId;
+
+    //缓存名称
+    private String cacheName;
+
+    //缓存key，为null时表示清空整个缓存
+    private String key;
+
+    //清空缓存后的新版本号，key不为null时为null
+    private Long version;
+}
@@ -0,0 +1,257 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClassName: TwoLevelCache
+ * Package: com.sky.cache
+ * Description: 二级缓存，本地Caffeine作为L1，Redis作为L2
+ * 读：L1 -> L2 -> 数据库（L2命中时回填L1）
+ * 写/失效：先操作L2，再操作L1，最后通过Redis发布订阅通知其他节点失效各自的L1
+ * 清空：Redis中的key带有版本号（cacheName::v{version}::key），清空时只需INCR版本号，
+ * 旧版本的key不再被访问，由过期时间自动回收，避免使用KEYS扫描整个键空间
+ * 版本号缓存在本地，读写L2时不再额外查询版本号；清空时新版本号随失效消息广播，其他节点收到后更新本地版本号，
+ * 为防止漏收消息，本地版本号每隔VERSION_REFRESH_MILLIS从Redis重新读取一次
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    // 本地版本号的最长使用时间，超过后访问L2前从Redis重新读取，漏收失效消息时旧版本最多使用这么久
+    private static final long VERSION_REFRESH_MILLIS = 10000;
+
+    private final String name;
+    private final Cache<String, Object> localCache;
+    private final RedisTemplate redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration redisTtl;
+    private final String topic;
+    private final String nodeId;
+
+    // 本地缓存的版本号，-1表示尚未读取
+    private final AtomicLong version = new AtomicLong(-1);
+    private volatile long versionLoadedAt;
+
+    public TwoLevelCache(String name, Cache<String, Object> localCache, RedisTemplate redisTemplate,
+                         StringRedisTemplate stringRedisTemplate, Duration redisTtl, String topic, String nodeId) {
+        super(false); // 不缓存null值
+        this.name = name;
+        this.localCache = localCache;
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTtl = redisTtl;
+        this.topic = topic;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    /**
+     * 先查本地缓存，未命中再查Redis，Redis命中时回填本地缓存
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = String.valueOf(key);
+        Object value = localCache.getIfPresent(cacheKey);
+        if (value != null) {
+            return value;
+        }
+
+        value = redisTemplate.opsForValue().get(redisKey(cacheKey));
+        if (value != null) {
+            localCache.put(cacheKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * 本地缓存未命中时按key加载：同一key的并发请求只有一个执行L2查询和valueLoader，其余等待其结果；
+     * 不同key的加载互不阻塞
+     *
+     * @param key
+     * @param valueLoader
+     * @return
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String cacheKey = String.valueOf(key);
+        Object value = localCache.get(cacheKey, k -> load(k, key, valueLoader));
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String cacheKey = String.valueOf(key);
+        Object storeValue = toStoreValue(value);
+        putRedis(cacheKey, storeValue);
+        localCache.put(cacheKey, storeValue);
+
+        // 其他节点本地缓存中的旧值需要失效
+        publish(cacheKey);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void evict(Object key) {
+        String cacheKey = String.valueOf(key);
+        redisTemplate.delete(redisKey(cacheKey));
+        localCache.invalidate(cacheKey);
+
+        publish(cacheKey);
+    }
+
+    /**
+     * 清空缓存：版本号加1，旧版本的key全部失效，无论键空间多大都只需一次INCR和一次广播
+     */
+    @Override
+    public void clear() {
+        Long newVersion = stringRedisTemplate.opsForValue().increment(versionKey());
+        if (newVersion != null) {
+            updateVersion(newVersion);
+        }
+        localCache.invalidateAll();
+
+        publish(null, newVersion);
+    }
+
+    /**
+     * 收到其他节点的失效消息后，只失效本地缓存
+     *
+     * @param key        为null时清空整个本地缓存
+     * @param newVersion 清空缓存时的新版本号
+     */
+    public void evictLocal(String key, Long newVersion) {
+        if (key == null) {
+            if (newVersion != null) {
+                updateVersion(newVersion);
+            }
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 在本地缓存的加载函数中执行：先查L2，未命中再调用valueLoader并写入L2，返回值由Caffeine放入本地缓存
+     *
+     * @param cacheKey
+     * @param key
+     * @param valueLoader
+     * @return valueLoader返回null时不缓存
+     */
+    private Object load(String cacheKey, Object key, Callable<?> valueLoader) {
+        Object value = redisTemplate.opsForValue().get(redisKey(cacheKey));
+        if (value != null) {
+            return value;
+        }
+
+        Object loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (loaded == null) {
+            return null;
+        }
+        // 加载的是数据库中的当前值，其他节点的本地缓存不会比它新，不需要广播失效，避免冷启动时大量加载引发失效风暴
+        Object storeValue = toStoreValue(loaded);
+        putRedis(cacheKey, storeValue);
+        return storeValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void putRedis(String cacheKey, Object storeValue) {
+        if (redisTtl.isZero() || redisTtl.isNegative()) {
+            redisTemplate.opsForValue().set(redisKey(cacheKey), storeValue);
+        } else {
+            redisTemplate.opsForValue().set(redisKey(cacheKey), storeValue, redisTtl);
+        }
+    }
+
+    /**
+     * Redis中的key，规则：cacheName::v{version}::key
+     *
+     * @param cacheKey
+     * @return
+     */
+    private String redisKey(String cacheKey) {
+        return name + "::v" + currentVersion() + "::" + cacheKey;
+    }
+
+    /**
+     * 版本号的key，规则：cacheName::version
+     *
+     * @return
+     */
+    private String versionKey() {
+        return name + "::version";
+    }
+
+    /**
+     * 当前版本号，优先使用本地缓存的版本号，首次使用或超过刷新间隔时才从Redis读取
+     *
+     * @return
+     */
+    private long currentVersion() {
+        long current = version.get();
+        if (current >= 0 && System.currentTimeMillis() - versionLoadedAt < VERSION_REFRESH_MILLIS) {
+            return current;
+        }
+        String stored = stringRedisTemplate.opsForValue().get(versionKey());
+        versionLoadedAt = System.currentTimeMillis();
+        return updateVersion(stored == null ? 0L : Long.parseLong(stored));
+    }
+
+    /**
+     * 更新本地版本号，版本号只增不减，乱序到达的旧版本号不会覆盖新版本号
+     *
+     * @param newVersion
+     * @return 更新后的版本号
+     */
+    private long updateVersion(long newVersion) {
+        return version.accumulateAndGet(newVersion, Math::max);
+    }
+
+    private void publish(String cacheKey) {
+        publish(cacheKey, null);
+    }
+
+    /**
+     * 广播失效消息，通知其他节点失效本地缓存
+     *
+     * @param cacheKey
+     * @param newVersion 清空缓存时的新版本号
+     */
+    private void publish(String cacheKey, Long newVersion) {
+        try {
+            redisTemplate.convertAndSend(topic, JSON.toJSONString(new CacheMessage(nodeId, name, cacheKey, newVersion)));
+        } catch (Exception e) {
+            // 广播失败时其他节点的本地缓存依然会在过期后失效，不影响本次操作
+            log.error("发布缓存失效消息失败：cacheName={}, key={}", name, cacheKey, e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.TwoLevelCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ClassName: TwoLevelCacheManager
+ * Package: com.sky.cache
+ * Description: 二级缓存管理器，按缓存名称动态创建TwoLevelCache，
+ * 通过@EnableCaching开启后，@Cacheable/@CacheEvict等注解都会使用该缓存管理器
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final ConcurrentMap<String, TwoLevelCache> cacheMap = new ConcurrentHashMap<>();
+
+    private final RedisTemplate redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TwoLevelCacheProperties properties;
+
+    // 当前节点id，用于忽略自己发布的失效消息
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public TwoLevelCacheManager(RedisTemplate redisTemplate, StringRedisTemplate stringRedisTemplate,
+                                TwoLevelCacheProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.properties = properties;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return cacheMap.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 处理其他节点广播的缓存失效消息
+     *
+     * @param message
+     */
+    public void onCacheMessage(CacheMessage message) {
+        if (nodeId.equals(message.getNodeId())) {
+            return;
+        }
+        TwoLevelCache cache = cacheMap.get(message.getCacheName());
+        if (cache != null) {
+            log.debug("失效本地缓存：cacheName={}, key={}", message.getCacheName(), message.getKey());
+            cache.evictLocal(message.getKey(), message.getVersion());
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        log.info("创建二级缓存：{}", name);
+        com.github.benmanes.caffeine.cache.Cache<String, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getLocalTtlSeconds()))
+                .build();
+        return new TwoLevelCache(name, localCache, redisTemplate, stringRedisTemplate,
+                Duration.ofSeconds(properties.getRedisTtlSeconds()), properties.getTopic(), nodeId);
+    }
+}
@@ -0,0 +1,110 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.json.JacksonObjectMapper;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * ClassName: VersionedJacksonRedisSerializer
+ * Package: com.sky.cache
+ * Description: 带版本号的Redis value序列化器
+ * 格式：1字节版本号 + JSON（带@class类型信息，保证List<DishVO>、Result等可以原样还原）
+ * 版本2使用独立的ObjectMapper，日期时间按ISO-8601格式读写，保留秒和纳秒；
+ * 版本1复用接口返回用的JacksonObjectMapper（LocalDateTime只精确到分钟），仅用于读取升级前写入的数据
+ * 与JDK序列化速度相当，类增删字段时不会因为serialVersionUID不一致而反序列化失败；
+ * 由于每个对象都带@class，同类对象较多的列表体积可能大于JDK序列化，见RedisSerializerBenchmark输出的大小对比
+ * 兼容升级前使用JDK序列化写入的旧数据（以0xACED开头），读取时自动回退到JDK反序列化
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public class VersionedJacksonRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 当前格式版本号，格式不兼容变化时递增，并在deserialize中保留对旧版本的读取
+     */
+    public static final byte VERSION = 2;
+
+    // 使用JacksonObjectMapper写入的旧版本
+    private static final byte VERSION_1 = 1;
+
+    // JDK序列化流的魔数0xACED的第一个字节
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper version1ObjectMapper;
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    public VersionedJacksonRedisSerializer() {
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        activateTyping(this.objectMapper);
+        this.version1ObjectMapper = new JacksonObjectMapper();
+        activateTyping(this.version1ObjectMapper);
+    }
+
+    /**
+     * 写入@class类型信息，只允许还原项目自身的类以及常用的JDK类型，避免任意类型反序列化
+     *
+     * @param mapper
+     */
+    private static void activateTyping(ObjectMapper mapper) {
+        BasicPolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.lang.")
+                .allowIfSubType("java.math.")
+                .allowIfSubType("java.time.")
+                .build();
+        mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            byte[] bytes = new byte[json.length + 1];
+            bytes[0] = VERSION;
+            System.arraycopy(json, 0, bytes, 1, json.length);
+            return bytes;
+        } catch (Exception e) {
+            throw new SerializationException("Redis value序列化失败：" + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        // 升级前使用JDK序列化写入的旧数据
+        if (bytes[0] == JDK_STREAM_MAGIC) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        ObjectMapper mapper;
+        if (bytes[0] == VERSION) {
+            mapper = objectMapper;
+        } else if (bytes[0] == VERSION_1) {
+            mapper = version1ObjectMapper;
+        } else {
+            throw new SerializationException("不支持的Redis value格式版本：" + bytes[0]);
+        }
+        try {
+            return mapper.readValue(bytes, 1, bytes.length - 1, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("Redis value反序列化失败", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.sky.cart;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * ClassName: DatabaseShoppingCartStore
+ * Package: com.sky.cart
+ * Description: 购物车保存在MySQL的shopping_cart表中（sky.cart.store=db）
+ * 依赖唯一索引uk_user_item（见db/shopping_cart_unique.sql），加购是单条语句，重复点击不会产生重复行；减购是同一事务中的两条条件语句
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "sky.cart.store", havingValue = "db")
+public class DatabaseShoppingCartStore implements ShoppingCartStore {
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    /**
+     * 一条insert ... on duplicate key update完成新增或数量加1，不需要先查询
+     */
+    @Override
+    public void add(Long userId, ShoppingCartDTO shoppingCartDTO) {
+        int rows = shoppingCartDTO.getDishId() != null
+                ? shoppingCartMapper.upsertDish(userId, shoppingCartDTO.getDishId(), shoppingCartDTO.getDishFlavor())
+                : shoppingCartMapper.upsertSetmeal(userId, shoppingCartDTO.getSetmealId());
+        if (rows == 0) {
+            // 商品不存在或已停售
+            throw new ShoppingCartBusinessException(MessageConstant.GOODS_NOT_FOUND);
+        }
+    }
+
+    /**
+     * 数量大于1时一条update减1，否则一条delete删除，均为条件更新，不需要先查询
+     * MySQL无法在一条语句中“减1或删除”，两条语句放在同一事务中：update按唯一索引定位时即使数量不满足条件也会锁住该行
+     * （默认的可重复读隔离级别下锁持有到事务结束），delete执行前并发的加购只能等待，不会出现加购被删除或减购丢失
+     */
+    @Override
+    @Transactional
+    public void sub(Long userId, ShoppingCartDTO shoppingCartDTO) {
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .userId(userId)
+                .dishId(shoppingCartDTO.getDishId())
+                .setmealId(shoppingCartDTO.getSetmealId())
+                .dishFlavor(shoppingCartDTO.getDishFlavor()).build();
+        if (shoppingCartMapper.decreaseNumber(shoppingCart) == 0) {
+            shoppingCartMapper.deleteIfLast(shoppingCart);
+        }
+    }
+
+    @Override
+    public void addAll(Long userId, List<ShoppingCart> shoppingCartList) {
+        // 将购物车对象批量添加到数据库
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
+
+    @Override
+    public List<ShoppingCart> list(Long userId) {
+        ShoppingCart shoppingCart = ShoppingCart.builder().userId(userId).build();
+        return shoppingCartMapper.list(shoppingCart);
+    }
+
+    @Override
+    public void clear(Long userId) {
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+}
@@ -0,0 +1,210 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: RedisShoppingCartStore
+ * Package: com.sky.cart
+ * Description: 购物车保存在Redis中（sky.cart.store=redis，默认），每个用户两个hash：
+ * cart:{userId}      field为商品标识（d:菜品id:口味 或 s:套餐id），value为数量，通过HINCRBY原子增减
+ * cart:{userId}:item field同上，value为商品名称、图片、单价等信息的JSON，只在第一次加入时写入
+ * 加减数量只需一次Redis往返，不再访问MySQL；下单时读取购物车生成订单明细，下单成功后清空
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "sky.cart.store", havingValue = "redis", matchIfMissing = true)
+public class RedisShoppingCartStore implements ShoppingCartStore {
+
+    private static final String CART_KEY_PREFIX = "cart:";
+
+    // 商品已在购物车中时数量加ARGV[2]，否则返回-1
+    private static final DefaultRedisScript<Long> INCREMENT_IF_PRESENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then return -1 end " +
+                    "local number = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+                    "return number", Long.class);
+
+    // ARGV[1]为过期时间，之后每3个参数为一个商品：field、商品信息JSON、增加的数量
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "for i = 2, #ARGV, 3 do " +
+                    "redis.call('HSETNX', KEYS[2], ARGV[i], ARGV[i + 1]) " +
+                    "redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 2]) " +
+                    "end " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[1]) " +
+                    "return 1", Long.class);
+
+    // 数量减1，减到0时删除该商品
+    private static final DefaultRedisScript<Long> SUB_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+                    "local number = redis.call('HINCRBY', KEYS[1], ARGV[1], -1) " +
+                    "if number <= 0 then " +
+                    "redis.call('HDEL', KEYS[1], ARGV[1]) " +
+                    "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+                    "end " +
+                    "return number", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    // 购物车在最后一次修改后保留的天数
+    @Value("${sky.cart.ttl-days:7}")
+    private long ttlDays;
+
+    @Override
+    public void add(Long userId, ShoppingCartDTO shoppingCartDTO) {
+        String field = field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+        // 大多数点击是已有商品数量加1，只需一次往返
+        Long number = stringRedisTemplate.execute(INCREMENT_IF_PRESENT_SCRIPT, keys(userId), field, "1", ttlSeconds());
+        if (number != null && number >= 0) {
+            return;
+        }
+
+        // 第一次加入该商品，查询名称、图片和单价，商品不存在或已停售时不能加入
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .dishId(shoppingCartDTO.getDishId())
+                .setmealId(shoppingCartDTO.getSetmealId())
+                .dishFlavor(shoppingCartDTO.getDishFlavor())
+                .createTime(LocalDateTime.now())
+                .build();
+        if (shoppingCartDTO.getDishId() != null) {
+            Dish dish = dishMapper.getById(shoppingCartDTO.getDishId());
+            checkAvailable(dish != null, dish == null ? null : dish.getStatus());
+            shoppingCart.setName(dish.getName()).setImage(dish.getImage()).setAmount(dish.getPrice());
+        } else {
+            Setmeal setmeal = setmealMapper.getById(shoppingCartDTO.getSetmealId());
+            checkAvailable(setmeal != null, setmeal == null ? null : setmeal.getStatus());
+            shoppingCart.setName(setmeal.getName()).setImage(setmeal.getImage()).setAmount(setmeal.getPrice());
+        }
+        stringRedisTemplate.execute(ADD_SCRIPT, keys(userId), ttlSeconds(), field, JSON.toJSONString(shoppingCart), "1");
+    }
+
+    @Override
+    public void sub(Long userId, ShoppingCartDTO shoppingCartDTO) {
+        String field = field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+        stringRedisTemplate.execute(SUB_SCRIPT, keys(userId), field);
+    }
+
+    @Override
+    public void addAll(Long userId, List<ShoppingCart> shoppingCartList) {
+        if (shoppingCartList == null || shoppingCartList.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(shoppingCartList.size() * 3 + 1);
+        args.add(ttlSeconds());
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            // 复制一份写入，不修改调用方的对象，id、用户id和数量不保存在商品信息中
+            ShoppingCart item = new ShoppingCart();
+            BeanUtils.copyProperties(shoppingCart, item, "id", "userId", "number");
+            args.add(field(item.getDishId(), item.getSetmealId(), item.getDishFlavor()));
+            args.add(JSON.toJSONString(item));
+            args.add(String.valueOf(shoppingCart.getNumber() == null ? 1 : shoppingCart.getNumber()));
+        }
+        stringRedisTemplate.execute(ADD_SCRIPT, keys(userId), args.toArray());
+    }
+
+    @Override
+    public List<ShoppingCart> list(Long userId) {
+        List<String> keys = keys(userId);
+        Map<Object, Object> numbers = stringRedisTemplate.opsForHash().entries(keys.get(0));
+        if (numbers.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(keys.get(1));
+
+        List<ShoppingCart> shoppingCartList = new ArrayList<>(numbers.size());
+        for (Map.Entry<Object, Object> entry : numbers.entrySet()) {
+            Object item = items.get(entry.getKey());
+            int number = Integer.parseInt(entry.getValue().toString());
+            if (item == null || number <= 0) {
+                continue;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject(item.toString(), ShoppingCart.class);
+            shoppingCart.setUserId(userId).setNumber(number);
+            shoppingCartList.add(shoppingCart);
+        }
+        shoppingCartList.sort(Comparator.comparing(ShoppingCart::getCreateTime,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return shoppingCartList;
+    }
+
+    @Override
+    public void clear(Long userId) {
+        List<String> keys = keys(userId);
+        // 在事务中时，等事务提交后再清空，下单失败时保留购物车
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stringRedisTemplate.delete(keys);
+                }
+            });
+        } else {
+            stringRedisTemplate.delete(keys);
+        }
+    }
+
+    /**
+     * 商品不存在时与DatabaseShoppingCartStore一样抛出业务异常，已停售的商品也不能加入购物车
+     */
+    private void checkAvailable(boolean exists, Integer status) {
+        if (!exists) {
+            throw new ShoppingCartBusinessException(MessageConstant.GOODS_NOT_FOUND);
+        }
+        if (!StatusConstant.ENABLE.equals(status)) {
+            throw new ShoppingCartBusinessException(MessageConstant.GOODS_DISABLED);
+        }
+    }
+
+    /**
+     * 商品在hash中的field：d:菜品id:口味 或 s:套餐id
+     */
+    private String field(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null) {
+            return "d:" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor);
+        }
+        return "s:" + setmealId;
+    }
+
+    private List<String> keys(Long userId) {
+        String cartKey = CART_KEY_PREFIX + userId;
+        return Arrays.asList(cartKey, cartKey + ":item");
+    }
+
+    private String ttlSeconds() {
+        return String.valueOf(Duration.ofDays(ttlDays).getSeconds());
+    }
+}
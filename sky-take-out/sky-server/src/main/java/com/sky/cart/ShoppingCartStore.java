@@ -0,0 +1,56 @@
+package com.sky.cart;
+
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+/**
+ * ClassName: ShoppingCartStore
+ * Package: com.sky.cart
+ * Description: 购物车存储，通过sky.cart.store选择实现：redis（默认）或 db
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface ShoppingCartStore {
+
+    /**
+     * 商品数量加1，购物车中没有该商品时新增
+     *
+     * @param userId
+     * @param shoppingCartDTO
+     */
+    void add(Long userId, ShoppingCartDTO shoppingCartDTO);
+
+    /**
+     * 商品数量减1，减到0时删除该商品
+     *
+     * @param userId
+     * @param shoppingCartDTO
+     */
+    void sub(Long userId, ShoppingCartDTO shoppingCartDTO);
+
+    /**
+     * 批量加入购物车（再来一单），已存在的商品累加数量
+     *
+     * @param userId
+     * @param shoppingCartList
+     */
+    void addAll(Long userId, List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 查询用户的购物车，按加入时间排序
+     *
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 清空用户的购物车，在事务中调用时与事务一起提交
+     *
+     * @param userId
+     */
+    void clear(Long userId);
+}
@@ -0,0 +1,36 @@
+package com.sky.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * ClassName: AsyncConfiguration
+ * Package: com.sky.config
+ * Description: 配置类，创建调用外部接口（百度地图等）使用的有界线程池
+ * 线程数和队列长度都有上限，外部接口变慢时不会无限制地堆积任务；队列满时直接拒绝，由调用方走降级逻辑
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Configuration
+@Slf4j
+public class AsyncConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor externalCallExecutor() {
+        log.info("开始创建外部接口调用线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(200);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("external-call-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
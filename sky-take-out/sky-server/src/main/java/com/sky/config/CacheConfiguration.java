@@ -0,0 +1,71 @@
+package com.sky.config;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.cache.CacheMessage;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.TwoLevelCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * ClassName: CacheConfiguration
+ * Package: com.sky.config
+ * Description: 配置类，注册二级缓存管理器（Caffeine L1 + Redis L2），以及跨节点失效本地缓存的Redis消息监听
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    /**
+     * 二级缓存管理器，替换Spring Boot默认的RedisCacheManager，SkyApplication上的@EnableCaching会使用该Bean
+     *
+     * @param redisTemplate
+     * @param stringRedisTemplate 用于读写缓存版本号
+     * @param twoLevelCacheProperties
+     * @return
+     */
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisTemplate redisTemplate,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             TwoLevelCacheProperties twoLevelCacheProperties) {
+        log.info("开始创建二级缓存管理器...");
+        return new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, twoLevelCacheProperties);
+    }
+
+    /**
+     * 订阅缓存失效频道，收到其他节点的消息后失效本地缓存
+     * 该监听容器是全局唯一的，WebSocketMessageBus也会向其中注册跨节点广播的监听
+     *
+     * @param redisConnectionFactory
+     * @param redisTemplate
+     * @param cacheManager
+     * @param twoLevelCacheProperties
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       RedisTemplate redisTemplate,
+                                                                       TwoLevelCacheManager cacheManager,
+                                                                       TwoLevelCacheProperties twoLevelCacheProperties) {
+        log.info("开始订阅缓存失效频道：{}", twoLevelCacheProperties.getTopic());
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            // 使用与发布时相同的序列化器反序列化消息体
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body != null) {
+                cacheManager.onCacheMessage(JSON.parseObject(body.toString(), CacheMessage.class));
+            }
+        }, new ChannelTopic(twoLevelCacheProperties.getTopic()));
+        return container;
+    }
+}
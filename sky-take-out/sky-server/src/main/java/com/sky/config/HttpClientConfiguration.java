@@ -0,0 +1,48 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * ClassName: HttpClientConfiguration
+ * Package: com.sky.config
+ * Description: 配置类，按sky.http-client配置初始化HttpClientUtil的共享连接池，并定期输出连接池统计
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    @Autowired
+    private HttpClientProperties httpClientProperties;
+
+    @PostConstruct
+    public void init() {
+        log.info("开始初始化HttpClient连接池...");
+        HttpClientUtil.configure(httpClientProperties);
+    }
+
+    /**
+     * 每分钟检查一次连接池统计：已借出的连接达到上限或有线程在等待连接时告警，说明连接数不足；其余情况只输出DEBUG日志
+     */
+    @Scheduled(fixedRate = 60000)
+    public void logPoolStats() {
+        PoolStats stats = HttpClientUtil.getPoolStats();
+        if (stats.getPending() > 0 || stats.getLeased() >= stats.getMax()) {
+            log.warn("HttpClient连接池已满：leased={}, pending={}, available={}, max={}",
+                    stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+        } else if (log.isDebugEnabled()) {
+            log.debug("HttpClient连接池：leased={}, pending={}, available={}, max={}",
+                    stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sky.config;
+
+import com.sky.lease.WorkerIdLeaseManager;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ClassName: OrderNumberConfiguration
+ * Package: com.sky.config
+ * Description: 配置类，用于创建生成订单号的SnowflakeIdGenerator
+ * 节点id优先使用sky.order.worker-id，未配置时通过WorkerIdLeaseManager在Redis中租用一个空闲的节点id
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Configuration
+@Slf4j
+public class OrderNumberConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SnowflakeIdGenerator orderNumberGenerator(@Value("${sky.order.worker-id:-1}") long workerId,
+                                                     WorkerIdLeaseManager workerIdLeaseManager) {
+        if (workerId < 0) {
+            workerId = workerIdLeaseManager.acquire();
+        }
+        log.info("开始创建订单号生成器，workerId={}", workerId);
+        return new SnowflakeIdGenerator(workerId);
+    }
+}
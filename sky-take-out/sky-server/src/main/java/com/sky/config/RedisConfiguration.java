@@ -1,10 +1,14 @@
 package com.sky.config;
 
+import com.sky.cache.VersionedJacksonRedisSerializer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -20,6 +24,12 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @Slf4j
 public class RedisConfiguration {
 
+    /**
+     * Redis value序列化方式：jackson（默认，带版本号的JSON）或 jdk
+     */
+    @Value("${sky.redis.value-serializer:jackson}")
+    private String valueSerializer;
+
     @Bean // @Bean注解标记在方法上，表明该方法会返回一个对象，该对象要注册为Spring应用程序上下文中的Bean。在这种情况下，方法返回的RedisTemplate实例将被Spring管理。
     public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory
     // 方法参数RedisConnectionFactory redisConnectionFactory是一个RedisConnectionFactory实例，Spring会自动注入这个依赖。RedisConnectionFactory是一个用于创建与Redis服务器连接的工厂接口。
@@ -33,8 +43,28 @@ public class RedisConfiguration {
 
         // 3. 设置Redis key的序列化器。在这里，使用了StringRedisSerializer作为键的序列化器，这意味着在Redis操作中，键会被当作字符串处理。
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+
+        // 4. 设置Redis value的序列化器。默认使用基于JacksonObjectMapper的带版本号序列化器，替代体积大、速度慢的JDK序列化
+        RedisSerializer<Object> serializer = createValueSerializer();
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
 
         // 返回配置好的RedisTemplate实例。
         return redisTemplate;
     }
+
+    /**
+     * 根据配置创建value序列化器
+     *
+     * @return
+     */
+    private RedisSerializer<Object> createValueSerializer() {
+        if ("jdk".equalsIgnoreCase(valueSerializer)) {
+            log.info("Redis value使用JDK序列化...");
+            return new JdkSerializationRedisSerializer();
+        }
+        log.info("Redis value使用Jackson序列化，格式版本：{}", VersionedJacksonRedisSerializer.VERSION);
+        return new VersionedJacksonRedisSerializer();
+    }
 }
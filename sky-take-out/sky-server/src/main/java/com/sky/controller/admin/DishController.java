@@ -11,11 +11,11 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * ClassName: DishController
@@ -36,8 +36,6 @@ public class DishController {
 
     @Autowired
     private DishService dishService;
-    @Autowired
-    private RedisTemplate redisTemplate;
 
     /**
      * 新增菜品
@@ -47,6 +45,10 @@ public class DishController {
      */
     @PostMapping
     @ApiOperation(value = "新增菜品", notes = "新增菜品")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "dishCache", key = "#dishDTO.categoryId"), // 清除该分类的菜品缓存
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'dish'") // 下单使用的菜品价格快照
+    })
     public Result addDish(@RequestBody DishDTO dishDTO
             /*@RequestBody DishDTO dishDTO参数表示这个方法期望从请求的body中获取菜品数据，并且Spring将自动把JSON数据映射成DishDTO对象
              * 使用@RequestBody注解时，Spring会将HTTP请求的内容区中的JSON或XML数据反序列化为Java对象，因此请求的Content-Type必须为application/json或application/xml等相应的媒体类型*/) {
@@ -54,10 +56,6 @@ public class DishController {
 
         // 调用业务逻辑层方法，新增菜品及其口味
         dishService.addDishWithFlavors(dishDTO);
-        // 清除redis缓存数据
-        log.info("清除redis缓存数据...");
-        String key = "dish_" + dishDTO.getCategoryId();
-        redisTemplate.delete(key);
 
         // 返回成功结果
         return Result.success();
@@ -86,15 +84,16 @@ public class DishController {
      */
     @DeleteMapping
     @ApiOperation(value = "批量删除菜品", notes = "删除菜品")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "dishCache", allEntries = true), // 清除所有菜品缓存
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'dish'") // 下单使用的菜品价格快照
+    })
     public Result deleteDish(@RequestParam List<Long> ids) { // Spring MVC 会自动将这个以逗号分隔的字符串转换为 Long 类型的列表
         log.info("批量删除菜品：{}", ids);
 
         // 调用业务逻辑层方法，批量删除菜品及其口味
         dishService.deleteDishBatch(ids);
 
-        // 将所有的菜品缓存数据清理掉，所有以dish_开头的redis缓存数据都会被清理掉
-        clearRedisCache("dish_*");
-
         return Result.success();
     }
 
@@ -142,13 +141,16 @@ public class DishController {
      */
     @PutMapping
     @ApiOperation(value = "修改菜品", notes = "修改菜品")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "dishCache", allEntries = true), // 清除所有菜品缓存
+            @CacheEvict(cacheNames = "setmealDishCache", allEntries = true), // 套餐包含的菜品选项中有菜品名称、图片等信息
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'dish'") // 下单使用的菜品价格快照
+    })
     public Result updateDish(@RequestBody DishDTO dishDTO) {
         log.info("修改菜品：{}", dishDTO);
         // 调用业务逻辑层方法，修改菜品及其口味
         dishService.updateDishWithFlavors(dishDTO);
 
-        // 清除redis缓存数据
-        clearRedisCache("dish_*");
         // 返回成功结果
         return Result.success();
     }
@@ -162,26 +164,17 @@ public class DishController {
      */
     @PostMapping("/status/{status}")
     @ApiOperation(value = "菜品起售、停售", notes = "菜品起售、停售")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "dishCache", allEntries = true), // 清除所有菜品缓存
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'dish'") // 下单使用的菜品价格快照
+    })
     public Result saleStatusOfDish(@PathVariable Integer status,
                                    @RequestParam Long id) {
         log.info("菜品起售、停售：status={}, id={}", status, id);
         // 调用业务逻辑层方法，修改菜品售卖状态
         dishService.updateSaleStatus(status, id);
 
-        // 清除redis缓存数据
-        clearRedisCache("dish_*");
-
         // 返回成功结果
         return Result.success();
     }
-
-    /**
-     * 清除redis缓存数据
-     * @param pattern
-     */
-    private void clearRedisCache(String pattern) {
-        log.info("清除所有菜品redis缓存数据...");
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
-    }
 }
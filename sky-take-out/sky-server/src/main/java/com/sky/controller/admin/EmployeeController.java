@@ -15,6 +15,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -33,6 +34,9 @@ public class EmployeeController {
     private EmployeeService employeeService;
     @Autowired
     private JwtProperties jwtProperties;
+    //员工所属店铺，写入令牌，WebSocket连接据此订阅本店的消息
+    @Value("${sky.shop.id:1}")
+    private String shopId;
 
     /**
      * 登录
@@ -52,6 +56,7 @@ public class EmployeeController {
         //登录成功后，生成jwt令牌
         Map<String, Object> claims = new HashMap<>();  //声明一个Map来存放自定义的声明
         claims.put(JwtClaimsConstant.EMP_ID, employee.getId());
+        claims.put(JwtClaimsConstant.SHOP_ID, shopId);
         String token = JwtUtil.createJWT(
                 jwtProperties.getAdminSecretKey(),  //  JwtProperties 对象中获取管理员（admin）JWT的秘钥
                 jwtProperties.getAdminTtl(),  //  JwtProperties 对象中获取管理员（admin）JWT的过期时间
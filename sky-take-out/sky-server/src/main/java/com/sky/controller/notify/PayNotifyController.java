@@ -1,21 +1,25 @@
 package com.sky.controller.notify;
 
-import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
-import com.sky.properties.WeChatProperties;
+import com.alibaba.fastjson.PropertyNamingStrategy;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.sky.dto.PayNotifyDTO;
+import com.sky.dto.PayNotifyTransactionDTO;
 import com.sky.service.OrderService;
-import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import com.sky.service.PayNotifyIdempotencyService;
+import com.sky.utils.AesGcmDecryptUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 
 /**
  * 支付回调相关接口
@@ -24,10 +28,28 @@ import java.util.HashMap;
 @RequestMapping("/notify")
 @Slf4j
 public class PayNotifyController {
+
+    //回调报文的字段为下划线风格，按下划线命名直接映射到DTO的驼峰字段
+    private static final ParserConfig SNAKE_CASE_CONFIG = new ParserConfig();
+
+    static {
+        SNAKE_CASE_CONFIG.propertyNamingStrategy = PropertyNamingStrategy.SnakeCase;
+    }
+
+    //给微信的响应报文是固定的，预先编码
+    private static final byte[] SUCCESS_BODY = "{\"code\":\"SUCCESS\",\"message\":\"SUCCESS\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FAIL_BODY = "{\"code\":\"FAIL\",\"message\":\"PROCESSING\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOO_LARGE_BODY = "{\"code\":\"FAIL\",\"message\":\"BODY TOO LARGE\"}".getBytes(StandardCharsets.UTF_8);
+
+    //微信支付通知报文只有几KB，超过该长度的请求直接拒绝
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
     @Autowired
     private OrderService orderService;
     @Autowired
-    private WeChatProperties weChatProperties;
+    private AesGcmDecryptUtil aesGcmDecryptUtil;
+    @Autowired
+    private PayNotifyIdempotencyService payNotifyIdempotencyService;
 
     /**
      * 支付成功回调
@@ -37,68 +59,120 @@ public class PayNotifyController {
     @RequestMapping("/paySuccess")
     public void paySuccessNotify(HttpServletRequest request, HttpServletResponse response) throws Exception {
         //读取数据
-        String body = readData(request);
-        log.info("支付成功回调：{}", body);
+        byte[] body = readData(request);
+        if (body == null) {
+            log.warn("支付回调报文超过{}字节，拒绝处理", MAX_BODY_BYTES);
+            writeResponse(response, 413, TOO_LARGE_BODY);
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("支付成功回调：{}", new String(body, StandardCharsets.UTF_8));
+        }
 
-        //数据解密
-        String plainText = decryptData(body);
-        log.info("解密后的文本：{}", plainText);
+        //数据解密，解密只在内存中计算，先解密再按交易号去重
+        PayNotifyDTO payNotifyDTO = parse(body, PayNotifyDTO.class);
+        PayNotifyTransactionDTO transaction = parse(decryptData(payNotifyDTO), PayNotifyTransactionDTO.class);
+        String outTradeNo = transaction.getOutTradeNo();//商户平台订单号
+        String transactionId = transaction.getTransactionId();//微信支付交易号
 
-        JSONObject jsonObject = JSON.parseObject(plainText);
-        String outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
-        String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
+        //同一笔交易的重复通知（包括通知id不同的重发）携带相同的交易号，处理过的交易在访问数据库之前直接返回
+        String dedupKey = transactionId;
+        if (dedupKey == null) {
+            //没有交易号时以报文摘要去重
+            log.warn("支付回调缺少交易号，通知id：{}，商户平台订单号：{}", payNotifyDTO.getId(), outTradeNo);
+            dedupKey = DigestUtils.md5DigestAsHex(body);
+        }
+        if (!payNotifyIdempotencyService.tryBegin(dedupKey)) {
+            if (payNotifyIdempotencyService.isProcessed(dedupKey)) {
+                log.info("重复的支付通知，交易号：{}", dedupKey);
+                responseToWeixin(response);
+            } else {
+                //其他请求正在处理该交易，让微信稍后重试
+                log.info("支付通知正在处理中，交易号：{}", dedupKey);
+                responseFailToWeixin(response);
+            }
+            return;
+        }
 
-        log.info("商户平台订单号：{}", outTradeNo);
-        log.info("微信支付交易号：{}", transactionId);
+        try {
+            log.info("支付成功回调，通知id：{}，商户平台订单号：{}，微信支付交易号：{}", payNotifyDTO.getId(), outTradeNo, transactionId);
 
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+            //业务处理，修改订单状态、来单提醒，同一交易号只处理一次
+            //订单已不是待支付状态时记录为需要退款，仍然应答成功，避免微信重复通知
+            Integer result = orderService.paySuccess(outTradeNo, transactionId);
+            log.info("支付回调处理结果：{}，商户平台订单号：{}", result, outTradeNo);
+        } catch (Exception e) {
+            payNotifyIdempotencyService.release(dedupKey);
+            throw e;
+        }
+        payNotifyIdempotencyService.markProcessed(dedupKey);
 
         //给微信响应
         responseToWeixin(response);
     }
 
     /**
-     * 读取数据
+     * 读取数据，按Content-Length一次性读入字节数组
+     * 回调接口是公开的，报文长度不能超过MAX_BODY_BYTES，避免按伪造的Content-Length分配大数组
      *
      * @param request
-     * @return
+     * @return 报文超过长度上限时返回null
      * @throws Exception
      */
-    private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
+    private byte[] readData(HttpServletRequest request) throws Exception {
+        ServletInputStream inputStream = request.getInputStream();
+        int contentLength = request.getContentLength();
+        if (contentLength > MAX_BODY_BYTES) {
+            return null;
+        }
+        if (contentLength < 0) {
+            //未知长度时边读边检查长度
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                if (out.size() + n > MAX_BODY_BYTES) {
+                    return null;
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+        byte[] body = new byte[contentLength];
+        int offset = 0;
+        while (offset < contentLength) {
+            int n = inputStream.read(body, offset, contentLength - offset);
+            if (n < 0) {
+                throw new EOFException("回调报文不完整");
             }
-            result.append(line);
+            offset += n;
         }
-        return result.toString();
+        return body;
     }
 
     /**
-     * 数据解密
+     * 将UTF-8编码的JSON报文直接解析为DTO，不经过中间的String和JSONObject
      *
-     * @param body
+     * @param json
+     * @param clazz
      * @return
+     */
+    private <T> T parse(byte[] json, Class<T> clazz) {
+        return JSON.parseObject(json, 0, json.length, StandardCharsets.UTF_8, clazz,
+                SNAKE_CASE_CONFIG, null, JSON.DEFAULT_PARSER_FEATURE);
+    }
+
+    /**
+     * 数据解密
+     *
+     * @param payNotifyDTO
+     * @return 解密后的UTF-8编码的JSON
      * @throws Exception
      */
-    private String decryptData(String body) throws Exception {
-        JSONObject resultObject = JSON.parseObject(body);
-        JSONObject resource = resultObject.getJSONObject("resource");
-        String ciphertext = resource.getString("ciphertext");
-        String nonce = resource.getString("nonce");
-        String associatedData = resource.getString("associated_data");
-
-        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+    private byte[] decryptData(PayNotifyDTO payNotifyDTO) throws Exception {
+        PayNotifyDTO.Resource resource = payNotifyDTO.getResource();
         //密文解密
-        String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
-                nonce.getBytes(StandardCharsets.UTF_8),
-                ciphertext);
-
-        return plainText;
+        return aesGcmDecryptUtil.decrypt(resource.getAssociatedData(), resource.getNonce(), resource.getCiphertext());
     }
 
     /**
@@ -106,12 +180,22 @@ public class PayNotifyController {
      * @param response
      */
     private void responseToWeixin(HttpServletResponse response) throws Exception{
-        response.setStatus(200);
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("code", "SUCCESS");
-        map.put("message", "SUCCESS");
+        writeResponse(response, 200, SUCCESS_BODY);
+    }
+
+    /**
+     * 给微信响应处理失败，微信会稍后重试该通知
+     * @param response
+     */
+    private void responseFailToWeixin(HttpServletResponse response) throws Exception{
+        writeResponse(response, 500, FAIL_BODY);
+    }
+
+    private void writeResponse(HttpServletResponse response, int status, byte[] body) throws Exception {
+        response.setStatus(status);
         response.setHeader("Content-type", ContentType.APPLICATION_JSON.toString());
-        response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
         response.flushBuffer();
     }
 }
@@ -0,0 +1,27 @@
+package com.sky.lease;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * ClassName: JobLease
+ * Package: com.sky.lease
+ * Description: 定时任务的租约，owner在每次成功获取租约时都不同
+ * 租约过期被其他节点接管后，旧持有者续期会失败，据此停止写入
+ * token为获取租约时自增得到的fencing token，后获取的租约token更大，数据库据此拒绝旧持有者的写入
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class JobLease {
+
+    private String jobName;
+
+    // 持有者，格式：节点id:随机串
+    private String owner;
+
+    // fencing token，同一任务单调递增
+    private long token;
+}
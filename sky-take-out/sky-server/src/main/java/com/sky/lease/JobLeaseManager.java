@@ -0,0 +1,231 @@
+package com.sky.lease;
+
+import com.sky.mapper.JobFenceMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * ClassName: JobLeaseManager
+ * Package: com.sky.lease
+ * Description: 基于Redis的定时任务租约与分片
+ * 租约：job:lease:{jobName} 通过SET NX PX获取，同一时刻只有一个节点执行该任务，持有者宕机后租约过期，其他节点在下一次调度时接管
+ * fencing：获取租约时在同一脚本中自增 job:fence:{jobName} 得到token，后获取的租约token更大；
+ * 受保护的写入通过writeFenced执行，在同一事务中锁定job_fence表中该任务的行并比较token，
+ * 旧持有者（如长时间GC停顿后租约已被接管）的写入会被数据库拒绝，不依赖续期检查的时机
+ * 分片：各节点定时向有序集合 job:nodes 上报心跳；每次执行分片任务时，第一个到达的节点把当时的存活节点列表写成快照
+ * job:shards:{jobName}:{runId}，本次执行的所有节点都按同一份快照计算分片序号，避免各自读取到不同的节点集合而产生遗漏
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@Slf4j
+public class JobLeaseManager {
+
+    private static final String LEASE_KEY_PREFIX = "job:lease:";
+    private static final String FENCE_KEY_PREFIX = "job:fence:";
+    private static final String NODES_KEY = "job:nodes";
+    private static final String SHARDS_KEY_PREFIX = "job:shards:";
+
+    // 心跳间隔，超过3个间隔未上报的节点视为下线
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 10000;
+    private static final long NODE_EXPIRE_MILLIS = HEARTBEAT_INTERVAL_MILLIS * 3;
+
+    // 本次执行的节点快照已存在时直接返回；否则以当前存活节点（加上调用方自己）排序后写入快照
+    private static final DefaultRedisScript<String> SHARD_SNAPSHOT_SCRIPT = new DefaultRedisScript<>(
+            "local snapshot = redis.call('GET', KEYS[1]) " +
+                    "if snapshot then return snapshot end " +
+                    "local nodes = redis.call('ZRANGEBYSCORE', KEYS[2], ARGV[2], '+inf') " +
+                    "local found = false " +
+                    "for _, node in ipairs(nodes) do if node == ARGV[1] then found = true end end " +
+                    "if not found then table.insert(nodes, ARGV[1]) end " +
+                    "table.sort(nodes) " +
+                    "snapshot = table.concat(nodes, ',') " +
+                    "redis.call('SET', KEYS[1], snapshot, 'PX', ARGV[3]) " +
+                    "return snapshot", String.class);
+
+    // 获取租约成功时自增fencing token并返回，失败返回0
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return redis.call('INCR', KEYS[2]) end " +
+                    "return 0", Long.class);
+
+    // 仍是持有者时延长租约
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+                    "return 0", Long.class);
+
+    // 仍是持有者时释放租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+                    "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private JobFenceMapper jobFenceMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 当前节点id
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 尝试获取租约
+     *
+     * @param jobName
+     * @param ttl     租约有效期，应大于任务的正常执行时间，长任务需要调用renew续期
+     * @return 获取失败返回null
+     */
+    public JobLease tryAcquire(String jobName, Duration ttl) {
+        // 每次获取租约使用不同的持有者标识，旧的持有者无法续期或释放新的租约
+        String owner = nodeId + ":" + UUID.randomUUID();
+        Long token = stringRedisTemplate.execute(ACQUIRE_SCRIPT, Arrays.asList(leaseKey(jobName), FENCE_KEY_PREFIX + jobName),
+                owner, String.valueOf(ttl.toMillis()));
+        if (token == null || token == 0) {
+            log.debug("任务租约已被其他节点持有：{}", jobName);
+            return null;
+        }
+        log.info("获取任务租约：{}，持有者：{}，token：{}", jobName, owner, token);
+        return new JobLease(jobName, owner, token);
+    }
+
+    /**
+     * 续期租约，批量任务每处理一批调用一次，返回false表示租约已丢失，应立即停止写入
+     *
+     * @param lease
+     * @param ttl
+     * @return
+     */
+    public boolean renew(JobLease lease, Duration ttl) {
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(leaseKey(lease.getJobName())), lease.getOwner(), String.valueOf(ttl.toMillis()));
+        if (renewed == null || renewed == 0) {
+            log.warn("任务租约已丢失：{}，持有者：{}", lease.getJobName(), lease.getOwner());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 在fencing token保护下执行一次数据库写入
+     * 同一事务中先锁定job_fence表中该任务的行：其中的token大于当前租约的token，说明租约已被接管且新持有者已写入过，拒绝写入；
+     * 否则记录当前token再执行写入，行锁持有到事务提交，新旧持有者的写入不会交错
+     *
+     * @param lease
+     * @param write 写入操作，返回受影响的行数
+     * @return 写入的结果，token已过期时返回null
+     */
+    public Integer writeFenced(JobLease lease, IntSupplier write) {
+        return transactionTemplate.execute(status -> {
+            String jobName = lease.getJobName();
+            Long current = jobFenceMapper.getTokenForUpdate(jobName);
+            if (current == null) {
+                jobFenceMapper.insertIgnore(jobName);
+                current = jobFenceMapper.getTokenForUpdate(jobName);
+            }
+            if (current > lease.getToken()) {
+                log.warn("任务{}的token已过期，拒绝写入：{} < {}", jobName, lease.getToken(), current);
+                return null;
+            }
+            if (current < lease.getToken()) {
+                jobFenceMapper.updateToken(jobName, lease.getToken());
+            }
+            return write.getAsInt();
+        });
+    }
+
+    /**
+     * 释放租约，租约已被其他节点接管时不做任何操作
+     *
+     * @param lease
+     */
+    public void release(JobLease lease) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT,
+                Collections.singletonList(leaseKey(lease.getJobName())), lease.getOwner());
+    }
+
+    /**
+     * 在租约保护下执行任务，未获取到租约时跳过本次执行
+     *
+     * @param jobName
+     * @param ttl
+     * @param job     参数为获取到的租约，可用于批量任务中途续期
+     * @return 是否执行了任务
+     */
+    public boolean runWithLease(String jobName, Duration ttl, Consumer<JobLease> job) {
+        JobLease lease = tryAcquire(jobName, ttl);
+        if (lease == null) {
+            return false;
+        }
+        try {
+            job.accept(lease);
+            return true;
+        } finally {
+            release(lease);
+        }
+    }
+
+    /**
+     * 当前节点在某次分片任务执行中的分片
+     * 同一jobName和runId的所有调用共用第一个调用方写入的节点快照，快照中的节点各自处理一个分片，分片之间不重叠也不遗漏；
+     * 快照之后才上线的节点返回null，不参与本次执行；快照中的节点宕机时其分片本次不会被处理，由下一次执行覆盖
+     * Redis不可用时当作唯一节点处理全部数据（与其他节点的处理范围重叠，需要写入是幂等的条件更新）
+     *
+     * @param jobName
+     * @param runId   本次执行的标识，各节点必须一致，如按天执行的任务使用当天日期
+     * @param ttl     快照的保留时间，应大于各节点调度时间的偏差、小于两次执行的间隔
+     * @return 当前节点不在本次快照中时返回null
+     */
+    public JobShard currentShard(String jobName, String runId, Duration ttl) {
+        String snapshot;
+        try {
+            snapshot = stringRedisTemplate.execute(SHARD_SNAPSHOT_SCRIPT,
+                    List.of(SHARDS_KEY_PREFIX + jobName + ":" + runId, NODES_KEY),
+                    nodeId, String.valueOf(System.currentTimeMillis() - NODE_EXPIRE_MILLIS), String.valueOf(ttl.toMillis()));
+        } catch (Exception e) {
+            log.error("读取任务分片快照失败，当作唯一节点处理：{}", jobName, e);
+            return new JobShard(0, 1);
+        }
+        if (snapshot == null) {
+            return new JobShard(0, 1);
+        }
+        List<String> nodes = Arrays.asList(snapshot.split(","));
+        int index = nodes.indexOf(nodeId);
+        if (index < 0) {
+            log.info("当前节点不在任务{}本次执行的分片快照中，跳过", jobName);
+            return null;
+        }
+        return new JobShard(index, nodes.size());
+    }
+
+    /**
+     * 上报心跳，并清理已下线的节点
+     */
+    @Scheduled(fixedDelay = HEARTBEAT_INTERVAL_MILLIS)
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            stringRedisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            stringRedisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - NODE_EXPIRE_MILLIS);
+        } catch (Exception e) {
+            log.error("上报任务节点心跳失败：{}", nodeId, e);
+        }
+    }
+
+    private String leaseKey(String jobName) {
+        return LEASE_KEY_PREFIX + jobName;
+    }
+}
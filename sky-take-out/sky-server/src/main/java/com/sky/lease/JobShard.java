@@ -0,0 +1,23 @@
+package com.sky.lease;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * ClassName: JobShard
+ * Package: com.sky.lease
+ * Description: 当前节点在集群中的分片，按 mod(订单id, total) = index 划分处理范围
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Data
+@AllArgsConstructor
+public class JobShard {
+
+    // 当前节点的分片序号，从0开始
+    private int index;
+
+    // 存活节点总数
+    private int total;
+}
@@ -0,0 +1,128 @@
+package com.sky.lease;
+
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * ClassName: WorkerIdLeaseManager
+ * Package: com.sky.lease
+ * Description: 基于Redis租约分配订单号生成器的节点id
+ * 节点id i 对应 order:number:worker:{i}，通过SET NX PX占用，存活期间定时续期，正常关闭时释放，宕机后租约过期可被新节点复用
+ * 同一时刻每个节点id最多被一个存活节点持有，不会像单纯的自增计数器取模那样在1024次启动后与存活节点重复
+ * 探测的起点取自增计数器，正常情况下第一次探测即可占用成功
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@Slf4j
+public class WorkerIdLeaseManager {
+
+    private static final String WORKER_KEY_PREFIX = "order:number:worker:";
+    private static final String WORKER_SEQ_KEY = "order:number:worker";
+
+    // 续期间隔和租约有效期，Redis连续不可用超过有效期才可能丢失租约
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 10000;
+    private static final Duration LEASE_TTL = Duration.ofMillis(HEARTBEAT_INTERVAL_MILLIS * 6);
+
+    // 仍是持有者时延长租约
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+                    "return 0", Long.class);
+
+    // 仍是持有者时释放租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+                    "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 当前节点的持有者标识
+    private final String owner = UUID.randomUUID().toString();
+
+    // 已占用的节点id，未占用时为-1
+    private volatile long workerId = -1;
+
+    /**
+     * 占用一个空闲的节点id
+     *
+     * @return
+     * @throws IllegalStateException 所有节点id都已被占用
+     */
+    public synchronized long acquire() {
+        if (workerId >= 0) {
+            return workerId;
+        }
+        int total = (int) SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        Long seq = stringRedisTemplate.opsForValue().increment(WORKER_SEQ_KEY);
+        long start = seq == null ? 0 : seq;
+        for (int i = 0; i < total; i++) {
+            long candidate = (start + i) & SnowflakeIdGenerator.MAX_WORKER_ID;
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(workerKey(candidate), owner, LEASE_TTL);
+            if (Boolean.TRUE.equals(acquired)) {
+                workerId = candidate;
+                log.info("占用订单号生成器节点id：{}，持有者：{}", candidate, owner);
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("订单号生成器的" + total + "个节点id都已被占用");
+    }
+
+    /**
+     * 续期租约；租约已过期时重新占用同一个节点id，已被其他节点占用时只能告警，需要人工处理
+     */
+    @Scheduled(fixedDelay = HEARTBEAT_INTERVAL_MILLIS)
+    public void heartbeat() {
+        long current = workerId;
+        if (current < 0) {
+            return;
+        }
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(workerKey(current)), owner, String.valueOf(LEASE_TTL.toMillis()));
+            if (renewed != null && renewed != 0) {
+                return;
+            }
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(workerKey(current), owner, LEASE_TTL);
+            if (Boolean.TRUE.equals(acquired)) {
+                log.warn("订单号生成器节点id租约已过期，重新占用：{}", current);
+            } else {
+                log.error("订单号生成器节点id：{}已被其他节点占用，订单号可能重复，请重启当前节点", current);
+            }
+        } catch (Exception e) {
+            log.error("续期订单号生成器节点id失败：{}", current, e);
+        }
+    }
+
+    /**
+     * 正常关闭时释放节点id
+     */
+    @PreDestroy
+    public void release() {
+        long current = workerId;
+        if (current < 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(workerKey(current)), owner);
+            log.info("释放订单号生成器节点id：{}", current);
+        } catch (Exception e) {
+            log.warn("释放订单号生成器节点id失败，等待租约过期：{}", current, e);
+        }
+    }
+
+    private static String workerKey(long workerId) {
+        return WORKER_KEY_PREFIX + workerId;
+    }
+}
@@ -0,0 +1,79 @@
+package com.sky.mapper;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.BusinessDailyRollup;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * ClassName: BusinessDailyRollupMapper
+ * Package: com.sky.mapper
+ * Description: 每日营业数据汇总
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Mapper
+public interface BusinessDailyRollupMapper {
+
+    /**
+     * 增量更新某一天的汇总数据，rollup中的各字段为增量，当天没有记录时插入
+     *
+     * @param rollup
+     */
+    void increase(BusinessDailyRollup rollup);
+
+    /**
+     * 批量覆盖写入汇总数据（对账时使用）
+     *
+     * @param rollupList
+     */
+    void upsertBatch(List<BusinessDailyRollup> rollupList);
+
+    /**
+     * 查询时间区间内（包含两端）的汇总数据
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from sky_take_out.business_daily_rollup where date >= #{begin} and date <= #{end} order by date")
+    List<BusinessDailyRollup> list(LocalDate begin, LocalDate end);
+
+    /**
+     * 将一个已完成订单的明细累加到下单当天的菜品销量中
+     *
+     * @param orderId
+     * @param date
+     */
+    void increaseDishSales(Long orderId, LocalDate date);
+
+    /**
+     * 删除时间区间内的菜品销量汇总（对账时使用）
+     *
+     * @param begin
+     * @param end
+     */
+    void deleteDishSales(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据订单明细重新汇总时间区间内每天的菜品销量（对账时使用）
+     *
+     * @param begin
+     * @param end
+     */
+    void insertDishSalesFromOrders(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 根据每日菜品销量汇总查询销量排名top10
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop10(LocalDate begin, LocalDate end);
+}
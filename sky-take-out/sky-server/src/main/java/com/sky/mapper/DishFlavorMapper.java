@@ -44,4 +44,11 @@ public interface DishFlavorMapper {
      */
     @Select("select * from sky_take_out.dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> getByDishId(Long dishId);
+
+    /**
+     * 根据菜品id集合批量查询菜品口味信息
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
 }
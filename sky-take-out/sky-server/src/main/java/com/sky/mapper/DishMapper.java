@@ -3,6 +3,7 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
 import com.sky.dto.DishPageQueryDTO;
+import com.sky.dto.GoodsPriceDTO;
 import com.sky.entity.Dish;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishVO;
@@ -82,4 +83,12 @@ public interface DishMapper {
             "where id = #{id}")
     @AutoFill(value = OperationType.UPDATE) // 公共字段填充（updateTime,updateUser）
     void updateSaleStatus(Dish dish);
+
+    /**
+     * 查询所有菜品的名称、图片、单价、打包费和售卖状态，用于生成下单使用的价格快照
+     *
+     * @return
+     */
+    @Select("select id, name, image, price, pack_amount, status from sky_take_out.dish")
+    List<GoodsPriceDTO> listPrices();
 }
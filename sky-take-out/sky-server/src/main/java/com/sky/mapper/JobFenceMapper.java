@@ -0,0 +1,44 @@
+package com.sky.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * ClassName: JobFenceMapper
+ * Package: com.sky.mapper
+ * Description: 定时任务的fencing token，每个任务一行，需要在事务中使用
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Mapper
+public interface JobFenceMapper {
+
+    /**
+     * 任务第一次使用时插入一行，已存在时忽略
+     *
+     * @param jobName
+     */
+    @Insert("insert ignore into sky_take_out.job_fence (job_name, token, update_time) values (#{jobName}, 0, now())")
+    void insertIgnore(String jobName);
+
+    /**
+     * 锁定任务的行并读取已写入过的最大token，行锁持有到事务结束
+     *
+     * @param jobName
+     * @return
+     */
+    @Select("select token from sky_take_out.job_fence where job_name = #{jobName} for update")
+    Long getTokenForUpdate(String jobName);
+
+    /**
+     * 记录更大的token
+     *
+     * @param jobName
+     * @param token
+     */
+    @Update("update sky_take_out.job_fence set token = #{token}, update_time = now() where job_name = #{jobName}")
+    void updateToken(String jobName, long token);
+}
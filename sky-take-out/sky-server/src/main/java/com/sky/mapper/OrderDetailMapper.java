@@ -4,7 +4,6 @@ import com.sky.entity.OrderDetail;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,7 +21,7 @@ public interface OrderDetailMapper {
      * 批量插入订单详情
      * @param orderDetailArrayList
      */
-    void insertBatch(ArrayList<OrderDetail> orderDetailArrayList);
+    void insertBatch(List<OrderDetail> orderDetailArrayList);
 
     /**
      * 根据订单id查询订单明细
@@ -31,4 +30,11 @@ public interface OrderDetailMapper {
      */
     @Select("select * from sky_take_out.order_detail where order_id = #{orderId}")
     List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 根据订单id集合批量查询订单明细（一次in查询加载一页订单的明细，避免N+1查询）
+     * @param orderIds
+     * @return
+     */
+    List<OrderDetail> getByOrderIds(List<Long> orderIds);
 }
@@ -1,12 +1,16 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyOrderStatisticsDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import com.sky.vo.OrderStatisticsVO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -82,6 +86,32 @@ public interface OrderMapper {
     @Select("select * from sky_take_out.orders where status = #{status} and order_time < (#{orderTime})")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
 
+    /**
+     * 查询指定状态、下单时间早于orderTime的订单中最早的下单时间，没有订单时返回null
+     *
+     * @param status
+     * @param orderTime
+     * @return
+     */
+    @Select("select min(order_time) from sky_take_out.orders where status = #{status} and order_time < #{orderTime}")
+    LocalDateTime getMinOrderTimeByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
+
+    /**
+     * 批量状态流转：update orders set status = toStatus where status = fromStatus and order_time < orderTime limit n
+     * 每批单独提交（受租约保护的任务与fencing token检查在同一个短事务中提交），每批只锁定limit行，需要调用方循环执行直到返回值小于limit
+     *
+     * @param fromStatus
+     * @param toStatus
+     * @param orderTime
+     * @param cancelReason 不为空时同时设置取消原因和取消时间
+     * @param shardIndex   分片序号，只处理 mod(id, shardTotal) = shardIndex 的订单
+     * @param shardTotal   分片总数，小于等于1时不分片
+     * @param limit
+     * @return 本批受影响的行数
+     */
+    int updateStatusBatch(Integer fromStatus, Integer toStatus, LocalDateTime orderTime, String cancelReason,
+                          int shardIndex, int shardTotal, int limit);
+
     /**
      * 根据动态条件统计营业额数据
      *
@@ -99,4 +129,58 @@ public interface OrderMapper {
     Integer countByMap(Map map);
 
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按天分组统计时间区间内的营业额、订单总数和有效订单数（一条语句完成整个区间的统计）
+     * 没有订单的日期不会出现在结果中，需要调用方补0
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyOrderStatisticsDTO> getDailyStatistics(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 以游标方式按下单时间顺序逐行读取时间区间内的订单（MySQL流式读取，不会一次性加载到内存）
+     * 注意：需要在事务中遍历游标
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Options(fetchSize = Integer.MIN_VALUE)
+    @Select("select * from sky_take_out.orders where order_time >= #{begin} and order_time <= #{end} order by order_time")
+    Cursor<Orders> cursorByOrderTime(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 订单仍处于指定状态时才将其取消，返回受影响的行数，用于避免取消已被并发支付的订单
+     *
+     * @param id
+     * @param fromStatus 期望的当前状态
+     * @param toStatus 取消后的状态
+     * @param cancelReason
+     * @param cancelTime
+     * @return
+     */
+    @Update("update sky_take_out.orders set status = #{toStatus}, cancel_reason = #{cancelReason}, cancel_time = #{cancelTime} " +
+            "where id = #{id} and status = #{fromStatus}")
+    int cancelIfStatus(Long id, Integer fromStatus, Integer toStatus, String cancelReason, LocalDateTime cancelTime);
+
+    /**
+     * 订单仍处于指定状态时才将其改为已支付，返回受影响的行数
+     * 并发的重复回调、已超时取消的订单都不会被更新
+     *
+     * @param number
+     * @param fromStatus 期望的当前状态
+     * @param toStatus 支付后的订单状态
+     * @param payStatus 支付状态
+     * @param checkoutTime
+     * @param address 收货地址，为空时不修改
+     * @return
+     */
+    @Update("<script>update sky_take_out.orders set status = #{toStatus}, pay_status = #{payStatus}, " +
+            "checkout_time = #{checkoutTime}<if test='address != null'>, address = #{address}</if> " +
+            "where number = #{number} and status = #{fromStatus}</script>")
+    int paySuccessIfStatus(String number, Integer fromStatus, Integer toStatus, Integer payStatus,
+                           LocalDateTime checkoutTime, String address);
 }
@@ -0,0 +1,40 @@
+package com.sky.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+
+/**
+ * ClassName: PayNotifyLogMapper
+ * Package: com.sky.mapper
+ * Description: 支付回调记录，transaction_id上有唯一索引，用于回调处理的幂等
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Mapper
+public interface PayNotifyLogMapper {
+
+    /**
+     * 记录一次支付回调，交易号已存在时忽略
+     *
+     * @param transactionId
+     * @param outTradeNo
+     * @param createTime
+     * @return 1表示首次处理，0表示重复回调
+     */
+    @Insert("insert ignore into sky_take_out.pay_notify_log (transaction_id, out_trade_no, status, create_time) " +
+            "values (#{transactionId}, #{outTradeNo}, 1, #{createTime})")
+    int insertIgnore(String transactionId, String outTradeNo, LocalDateTime createTime);
+
+    /**
+     * 修改回调的处理结果
+     *
+     * @param transactionId
+     * @param status        取值见PayNotifyStatusConstant
+     */
+    @Update("update sky_take_out.pay_notify_log set status = #{status} where transaction_id = #{transactionId}")
+    void updateStatus(String transactionId, Integer status);
+}
@@ -2,6 +2,7 @@ package com.sky.mapper;
 
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
+import com.sky.dto.GoodsPriceDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.entity.Setmeal;
 import com.sky.enumeration.OperationType;
@@ -111,4 +112,12 @@ public interface SetmealMapper {
             "from sky_take_out.setmeal_dish sd left join sky_take_out.dish d on sd.dish_id = d.id " +
             "where sd.setmeal_id = #{setmealId}")
     List<DishItemVO> getDishItemBySetmealId(Long setmealId);
+
+    /**
+     * 查询所有套餐的名称、图片、单价、打包费和售卖状态，用于生成下单使用的价格快照
+     *
+     * @return
+     */
+    @Select("select id, name, image, price, pack_amount, status from sky_take_out.setmeal")
+    List<GoodsPriceDTO> listPrices();
 }
@@ -2,7 +2,6 @@ package com.sky.mapper;
 
 import com.sky.entity.ShoppingCart;
 import org.apache.ibatis.annotations.Delete;
-import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Update;
 
@@ -28,20 +27,42 @@ public interface ShoppingCartMapper {
     List<ShoppingCart> list(ShoppingCart shoppingCart);
 
     /**
-     * 根据id，更新购物车商品数量
-     * @param cart
+     * 菜品数量加1，购物车中没有该菜品（含口味）时从菜品表带出名称、图片和单价插入一行
+     * insert ... select ... on duplicate key update，依赖唯一索引uk_user_item，一条语句完成，并发点击不会产生重复行
+     * @param userId
+     * @param dishId
+     * @param dishFlavor
+     * @return 受影响的行数，菜品不存在或已停售时为0
      */
-    @Update("update sky_take_out.shopping_cart set number = #{number} where id = #{id}")
-    void updateNumberById(ShoppingCart cart);
+    int upsertDish(Long userId, Long dishId, String dishFlavor);
 
     /**
-     * 插入购物车商品
-     * @param shoppingCart
+     * 套餐数量加1，购物车中没有该套餐时从套餐表带出名称、图片和单价插入一行
+     * @param userId
+     * @param setmealId
+     * @return 受影响的行数，套餐不存在或已停售时为0
+     */
+    int upsertSetmeal(Long userId, Long setmealId);
+
+    /**
+     * 数量大于1时减1
+     * @param shoppingCart 用户id、菜品id、套餐id、口味
+     * @return 受影响的行数
      */
-    @Insert("insert into sky_take_out.shopping_cart " +
-            "(name, image, user_id, dish_id, setmeal_id, dish_flavor, number, amount, create_time) " +
-            "values (#{name}, #{image}, #{userId}, #{dishId}, #{setmealId}, #{dishFlavor}, #{number}, #{amount}, #{createTime})")
-    void insert(ShoppingCart shoppingCart);
+    @Update("update sky_take_out.shopping_cart set number = number - 1 " +
+            "where user_id = #{userId} and dish_id <=> #{dishId} and setmeal_id <=> #{setmealId} " +
+            "and dish_flavor <=> #{dishFlavor} and number > 1")
+    int decreaseNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 数量只剩1时删除该商品，需要与decreaseNumber在同一事务中执行
+     * @param shoppingCart 用户id、菜品id、套餐id、口味
+     * @return 受影响的行数
+     */
+    @Delete("delete from sky_take_out.shopping_cart " +
+            "where user_id = #{userId} and dish_id <=> #{dishId} and setmeal_id <=> #{setmealId} " +
+            "and dish_flavor <=> #{dishFlavor} and number <= 1")
+    int deleteIfLast(ShoppingCart shoppingCart);
 
     /**
      * 根据用户id删除购物车商品--清空该用户的购物车
@@ -52,14 +73,7 @@ public interface ShoppingCartMapper {
 
 
     /**
-     * 根据条件删除购物车商品
-     * @param id
-     */
-    @Delete("delete from sky_take_out.shopping_cart where id = #{id}")
-    void deleteById(Long id);
-
-    /**
-     * 将购物车对象批量添加到数据库
+     * 将购物车对象批量添加到数据库，已存在的商品累加数量
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
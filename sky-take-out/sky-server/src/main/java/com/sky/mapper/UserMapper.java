@@ -1,9 +1,12 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyUserStatisticsDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,4 +38,12 @@ public interface UserMapper {
     User getById(Long userId);
 
     Integer countByMap(Map map);
+
+    /**
+     * 按天分组统计时间区间内的新增用户数量，没有新增用户的日期需要调用方补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyUserStatisticsDTO> getDailyNewUsers(LocalDateTime begin, LocalDateTime end);
 }
@@ -0,0 +1,66 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+
+import java.time.LocalDate;
+
+/**
+ * ClassName: BusinessRollupService
+ * Package: com.sky.service
+ * Description: 每日营业数据汇总的增量维护与对账
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface BusinessRollupService {
+
+    /**
+     * 用户下单，下单当天的订单总数加1
+     *
+     * @param orders
+     */
+    void onOrderSubmitted(Orders orders);
+
+    /**
+     * 订单完成，累加下单当天的有效订单数、营业额和菜品销量
+     *
+     * @param orders
+     */
+    void onOrderCompleted(Orders orders);
+
+    /**
+     * 订单取消，下单当天的已取消订单数加1
+     *
+     * @param orders
+     */
+    void onOrderCancelled(Orders orders);
+
+    /**
+     * 新用户注册，注册当天的新增用户数加1
+     *
+     * @param date
+     */
+    void onUserRegistered(LocalDate date);
+
+    /**
+     * 根据订单表和用户表重新计算时间区间内（包含两端）的汇总数据，修正增量维护中的偏差
+     *
+     * @param begin
+     * @param end
+     */
+    void reconcile(LocalDate begin, LocalDate end);
+
+    /**
+     * 标记从某天开始的汇总数据需要对账，用于无法逐单累加的批量状态流转，多次标记时保留最早的日期
+     *
+     * @param date
+     */
+    void markDirty(LocalDate date);
+
+    /**
+     * 取出并清除需要对账的最早日期，没有标记时返回null
+     *
+     * @return
+     */
+    LocalDate pollDirtyFrom();
+}
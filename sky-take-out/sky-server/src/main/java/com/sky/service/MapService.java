@@ -0,0 +1,39 @@
+package com.sky.service;
+
+import com.sky.entity.AddressBook;
+
+/**
+ * ClassName: MapService
+ * Package: com.sky.service
+ * Description: 地图服务（百度地图），地址解析和路线规划的结果都会被缓存
+ * 地址无法解析、路线规划失败时抛出OrderBusinessException；地图服务本身不可用时抛出MapServiceUnavailableException
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface MapService {
+
+    /**
+     * 店铺的经纬度坐标（纬度,经度），启动时解析一次
+     *
+     * @return
+     */
+    String getShopLocation();
+
+    /**
+     * 收货地址的经纬度坐标（纬度,经度），按地址簿id缓存
+     *
+     * @param addressBook
+     * @return
+     */
+    String getAddressLocation(AddressBook addressBook);
+
+    /**
+     * 两个坐标之间的驾车距离，单位米，按起终点坐标缓存
+     *
+     * @param origin
+     * @param destination
+     * @return 没有返回路线时为null
+     */
+    Integer getDrivingDistance(String origin, String destination);
+}
@@ -0,0 +1,37 @@
+package com.sky.service;
+
+import com.sky.vo.OrderStatisticsVO;
+
+/**
+ * ClassName: OrderCounterService
+ * Package: com.sky.service
+ * Description: 待接单、待派送、派送中订单数量的实时计数器
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface OrderCounterService {
+
+    /**
+     * 订单状态变化，原状态计数减1，新状态计数加1（只统计待接单、待派送、派送中三种状态）
+     * 在事务中调用时，事务提交后才会更新计数
+     *
+     * @param fromStatus 原状态，新下单时为null
+     * @param toStatus   新状态
+     */
+    void transition(Integer fromStatus, Integer toStatus);
+
+    /**
+     * 读取各个状态的订单数量，O(1)
+     *
+     * @return
+     */
+    OrderStatisticsVO statistics();
+
+    /**
+     * 以数据库为准重新计算计数器
+     *
+     * @return 写入计数器的各个状态的订单数量
+     */
+    OrderStatisticsVO reconcile();
+}
@@ -32,9 +32,13 @@ public interface OrderService {
 
     /**
      * 支付成功，修改订单状态
-     * @param outTradeNo
+     * 同一交易号只处理一次，订单已不是待支付状态时不做修改
+     *
+     * @param outTradeNo    商户订单号
+     * @param transactionId 微信支付交易号
+     * @return 处理结果，取值见PayNotifyStatusConstant
      */
-    void paySuccess(String outTradeNo);
+    Integer paySuccess(String outTradeNo, String transactionId);
 
     /**
      * 查询订单详情
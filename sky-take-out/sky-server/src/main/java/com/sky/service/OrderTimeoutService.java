@@ -0,0 +1,42 @@
+package com.sky.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * ClassName: OrderTimeoutService
+ * Package: com.sky.service
+ * Description: 待支付订单的超时取消，基于Redis有序集合实现的延时队列
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface OrderTimeoutService {
+
+    /**
+     * 登记待支付订单，到达支付截止时间后自动取消
+     * 在事务中调用时，事务提交后才会登记
+     *
+     * @param orderId
+     * @param orderTime 下单时间
+     */
+    void register(Long orderId, LocalDateTime orderTime);
+
+    /**
+     * 订单已支付，取消登记
+     *
+     * @param orderId
+     */
+    void deregister(Long orderId);
+
+    /**
+     * 取消所有已到期的待支付订单
+     *
+     * @return 本次取消的订单数
+     */
+    int processDue();
+
+    /**
+     * 启动时把数据库中所有待支付订单重新登记到延时队列，是唯一的批量查询
+     */
+    void recover();
+}
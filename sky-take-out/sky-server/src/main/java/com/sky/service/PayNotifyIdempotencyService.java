@@ -0,0 +1,42 @@
+package com.sky.service;
+
+/**
+ * ClassName: PayNotifyIdempotencyService
+ * Package: com.sky.service
+ * Description: 支付回调去重，按微信支付交易号去重，微信对同一笔交易会多次通知，处理过的交易在访问数据库之前直接返回
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface PayNotifyIdempotencyService {
+
+    /**
+     * 开始处理一笔交易的通知（SET NX），同一交易同一时刻只有一个请求能开始处理
+     *
+     * @param transactionId 微信支付交易号
+     * @return true表示可以处理；false表示已处理完成或正在处理中，通过isProcessed区分
+     */
+    boolean tryBegin(String transactionId);
+
+    /**
+     * 交易的通知是否已处理完成
+     *
+     * @param transactionId
+     * @return
+     */
+    boolean isProcessed(String transactionId);
+
+    /**
+     * 处理成功，在保留期内的重试都会被直接跳过
+     *
+     * @param transactionId
+     */
+    void markProcessed(String transactionId);
+
+    /**
+     * 处理失败，释放占用，允许微信重试时重新处理
+     *
+     * @param transactionId
+     */
+    void release(String transactionId);
+}
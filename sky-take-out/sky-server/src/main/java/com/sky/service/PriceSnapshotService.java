@@ -0,0 +1,31 @@
+package com.sky.service;
+
+import com.sky.dto.GoodsPriceDTO;
+
+import java.util.List;
+
+/**
+ * ClassName: PriceSnapshotService
+ * Package: com.sky.service
+ * Description: 菜品、套餐的价格快照，下单时按快照在服务端计算金额，不信任客户端传来的金额
+ * 快照保存在二级缓存中，修改菜品、套餐时失效
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public interface PriceSnapshotService {
+
+    /**
+     * 所有菜品的名称、图片、单价和售卖状态
+     *
+     * @return
+     */
+    List<GoodsPriceDTO> listDishPrices();
+
+    /**
+     * 所有套餐的名称、图片、单价和售卖状态
+     *
+     * @return
+     */
+    List<GoodsPriceDTO> listSetmealPrices();
+}
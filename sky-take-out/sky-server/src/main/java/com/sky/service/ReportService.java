@@ -6,6 +6,7 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
 
 /**
@@ -57,7 +58,10 @@ public interface ReportService {
     /**
      * 导出运营数据报表
      *
+     * @param begin
+     * @param end
      * @param response
+     * @throws IOException 写入响应失败
      */
-    void exportBusinessData(HttpServletResponse response);
+    void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) throws IOException;
 }
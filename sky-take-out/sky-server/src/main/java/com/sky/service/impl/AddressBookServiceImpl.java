@@ -6,6 +6,7 @@ import com.sky.mapper.AddressBookMapper;
 import com.sky.service.AddressBookService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -49,10 +50,11 @@ public class AddressBookServiceImpl implements AddressBookService {
     }
 
     /**
-     * 根据id修改地址
+     * 根据id修改地址，同时失效该地址缓存的经纬度坐标
      *
      * @param addressBook
      */
+    @CacheEvict(cacheNames = "addressLocationCache", key = "#addressBook.id")
     public void update(AddressBook addressBook) {
         addressBookMapper.update(addressBook);
     }
@@ -79,6 +81,7 @@ public class AddressBookServiceImpl implements AddressBookService {
      *
      * @param id
      */
+    @CacheEvict(cacheNames = "addressLocationCache", key = "#id")
     public void deleteById(Long id) {
         addressBookMapper.deleteById(id);
     }
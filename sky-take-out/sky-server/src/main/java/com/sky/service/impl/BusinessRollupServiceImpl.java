@@ -0,0 +1,190 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyOrderStatisticsDTO;
+import com.sky.dto.DailyUserStatisticsDTO;
+import com.sky.entity.BusinessDailyRollup;
+import com.sky.entity.Orders;
+import com.sky.mapper.BusinessDailyRollupMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * ClassName: BusinessRollupServiceImpl
+ * Package: com.sky.service.impl
+ * Description: 每日营业数据汇总，订单数据按下单日期归属，与报表统计口径一致
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Service
+@Slf4j
+public class BusinessRollupServiceImpl implements BusinessRollupService {
+
+    public static final String ROLLUP_DIRTY_FROM_KEY = "rollup:dirty-from";
+
+    // 日期格式为yyyy-MM-dd，字符串顺序即日期顺序，只在新日期更早时覆盖
+    private static final DefaultRedisScript<Long> MARK_DIRTY_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1]) " +
+                    "if current == false or ARGV[1] < current then redis.call('SET', KEYS[1], ARGV[1]) return 1 end " +
+                    "return 0", Long.class);
+
+    private static final DefaultRedisScript<String> POLL_DIRTY_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1]) " +
+                    "if current then redis.call('DEL', KEYS[1]) end " +
+                    "return current", String.class);
+
+    @Autowired
+    private BusinessDailyRollupMapper businessDailyRollupMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 用户下单，下单当天的订单总数加1
+     *
+     * @param orders
+     */
+    @Override
+    public void onOrderSubmitted(Orders orders) {
+        businessDailyRollupMapper.increase(emptyDelta(orders.getOrderTime().toLocalDate()).setOrderCount(1));
+    }
+
+    /**
+     * 订单完成，累加下单当天的有效订单数、营业额和菜品销量
+     *
+     * @param orders
+     */
+    @Override
+    public void onOrderCompleted(Orders orders) {
+        LocalDate date = orders.getOrderTime().toLocalDate();
+        BigDecimal amount = orders.getAmount() == null ? BigDecimal.ZERO : orders.getAmount();
+        businessDailyRollupMapper.increase(emptyDelta(date).setValidOrderCount(1).setTurnover(amount));
+        businessDailyRollupMapper.increaseDishSales(orders.getId(), date);
+    }
+
+    /**
+     * 订单取消，下单当天的已取消订单数加1
+     *
+     * @param orders
+     */
+    @Override
+    public void onOrderCancelled(Orders orders) {
+        businessDailyRollupMapper.increase(emptyDelta(orders.getOrderTime().toLocalDate()).setCancelledOrderCount(1));
+    }
+
+    /**
+     * 新用户注册，注册当天的新增用户数加1
+     *
+     * @param date
+     */
+    @Override
+    public void onUserRegistered(LocalDate date) {
+        businessDailyRollupMapper.increase(emptyDelta(date).setNewUserCount(1));
+    }
+
+    /**
+     * 标记从某天开始的汇总数据需要对账，由每晚的对账任务处理
+     *
+     * @param date
+     */
+    @Override
+    public void markDirty(LocalDate date) {
+        stringRedisTemplate.execute(MARK_DIRTY_SCRIPT, Collections.singletonList(ROLLUP_DIRTY_FROM_KEY), date.toString());
+    }
+
+    /**
+     * 取出并清除需要对账的最早日期
+     *
+     * @return
+     */
+    @Override
+    public LocalDate pollDirtyFrom() {
+        String date = stringRedisTemplate.execute(POLL_DIRTY_SCRIPT, Collections.singletonList(ROLLUP_DIRTY_FROM_KEY));
+        return date == null ? null : LocalDate.parse(date);
+    }
+
+    /**
+     * 根据订单表和用户表重新计算时间区间内（包含两端）的汇总数据
+     *
+     * @param begin
+     * @param end
+     */
+    @Transactional
+    @Override
+    public void reconcile(LocalDate begin, LocalDate end) {
+        log.info("对账每日营业数据汇总：{} ~ {}", begin, end);
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        // 1. 各用一条按天分组的语句重新统计订单和新增用户
+        Map<LocalDate, DailyOrderStatisticsDTO> orderMap = orderMapper.getDailyStatistics(beginTime, endTime)
+                .stream()
+                .collect(Collectors.toMap(DailyOrderStatisticsDTO::getDate, Function.identity()));
+        Map<LocalDate, Integer> newUserMap = userMapper.getDailyNewUsers(beginTime, endTime)
+                .stream()
+                .collect(Collectors.toMap(DailyUserStatisticsDTO::getDate, DailyUserStatisticsDTO::getNewUser));
+
+        // 2. 覆盖写入区间内每一天的汇总数据，没有数据的日期写入0
+        List<BusinessDailyRollup> rollupList = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyOrderStatisticsDTO statistics = orderMap.get(date);
+            BusinessDailyRollup rollup = emptyDelta(date)
+                    .setNewUserCount(newUserMap.getOrDefault(date, 0))
+                    .setUpdateTime(now);
+            if (statistics != null) {
+                rollup.setTurnover(statistics.getTurnover() == null ? BigDecimal.ZERO : BigDecimal.valueOf(statistics.getTurnover()))
+                        .setOrderCount(statistics.getOrderCount())
+                        .setValidOrderCount(statistics.getValidOrderCount())
+                        .setCancelledOrderCount(statistics.getCancelledOrderCount());
+            }
+            rollupList.add(rollup);
+        }
+        if (!rollupList.isEmpty()) {
+            businessDailyRollupMapper.upsertBatch(rollupList);
+        }
+
+        // 3. 重新汇总菜品销量
+        businessDailyRollupMapper.deleteDishSales(begin, end);
+        businessDailyRollupMapper.insertDishSalesFromOrders(beginTime, endTime);
+    }
+
+    /**
+     * 构造某一天的增量对象，各字段初始为0
+     *
+     * @param date
+     * @return
+     */
+    private BusinessDailyRollup emptyDelta(LocalDate date) {
+        return BusinessDailyRollup.builder()
+                .date(date)
+                .turnover(BigDecimal.ZERO)
+                .orderCount(0)
+                .validOrderCount(0)
+                .cancelledOrderCount(0)
+                .newUserCount(0)
+                .updateTime(LocalDateTime.now())
+                .build();
+    }
+}
@@ -22,8 +22,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * ClassName: DishServiceImpl
@@ -141,18 +144,13 @@ public class DishServiceImpl implements DishService {
     public DishVO queryDishByIdWithFlavors(Long id) {
         // 1. 根据id查询菜品数据（id不存在时，返回一个空对象）
         Dish dish = dishMapper.getById(id);
-        // 2. 根据id查询菜品口味数据
-        List<DishFlavor> dishFlavors = dishFlavorMapper.getByDishId(id);
-
-        // 3. 封装返回值
-        DishVO dishVO = new DishVO();
         if(dish == null){  // 菜品不存在,返回null
             log.error("菜品不存在, id={}", id);
             return null;
         }
-        BeanUtils.copyProperties(dish, dishVO);  // 将dish对象属性复制到dishVO对象中
-        dishVO.setFlavors(dishFlavors);
-        return dishVO;
+
+        // 2. 查询菜品口味数据，并封装返回值
+        return assembleDishVOList(Collections.singletonList(dish)).get(0);
     }
 
     /**
@@ -218,16 +216,31 @@ public class DishServiceImpl implements DishService {
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.getByCategoryId(dish.getCategoryId());
 
+        return assembleDishVOList(dishList);
+    }
+
+    /**
+     * 将菜品集合封装为带口味的DishVO集合，口味数据通过一条 in (...) 语句批量查询，避免N+1查询
+     *
+     * @param dishList
+     * @return
+     */
+    private List<DishVO> assembleDishVOList(List<Dish> dishList) {
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.isEmpty()) {
+            return dishVOList;
+        }
 
+        // 1. 批量查询所有菜品的口味，按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
+
+        // 2. 在内存中组装DishVO
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
-            BeanUtils.copyProperties(d,dishVO);
-
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            BeanUtils.copyProperties(d, dishVO);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
         return dishVOList;
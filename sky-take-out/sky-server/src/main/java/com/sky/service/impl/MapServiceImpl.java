@@ -0,0 +1,170 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.AddressBook;
+import com.sky.exception.MapServiceUnavailableException;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.BaiduMapProperties;
+import com.sky.service.MapService;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ClassName: MapServiceImpl
+ * Package: com.sky.service.impl
+ * Description: 百度地图服务，接口地址取自sky.baidu.base-url，测试时可替换为本地的桩服务
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Service
+@Slf4j
+public class MapServiceImpl implements MapService {
+
+    // 百度地图服务端的状态码：权限校验失败、配额超限、ak不存在、并发超限等，与请求的地址无关
+    // status=1（包括“无相关结果”）无法与地址无效区分，仍按业务失败处理
+    private static final Set<String> UNAVAILABLE_STATUS = Set.of("3", "4", "5", "301", "302", "401", "402");
+
+    @Autowired
+    private BaiduMapProperties baiduMapProperties;
+
+    @Value("${sky.shop.address}")
+    private String shopAddress;
+
+    // 店铺地址固定不变，解析一次后保存在内存中
+    private volatile String shopLocation;
+
+    /**
+     * 启动时解析店铺坐标，失败时在第一次下单时重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (!baiduMapProperties.isEnabled()) {
+            return;
+        }
+        try {
+            getShopLocation();
+        } catch (Exception e) {
+            log.error("启动时解析店铺坐标失败：{}", shopAddress, e);
+        }
+    }
+
+    /**
+     * 店铺的经纬度坐标
+     *
+     * @return
+     */
+    @Override
+    public String getShopLocation() {
+        if (shopLocation == null) {
+            shopLocation = geocode(shopAddress, "店铺地址解析失败");
+            log.info("店铺坐标：{}", shopLocation);
+        }
+        return shopLocation;
+    }
+
+    /**
+     * 收货地址的经纬度坐标，修改地址簿时失效
+     *
+     * @param addressBook
+     * @return
+     */
+    @Cacheable(cacheNames = "addressLocationCache", key = "#addressBook.id", unless = "#result == null")
+    @Override
+    public String getAddressLocation(AddressBook addressBook) {
+        String address = addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail();
+        return geocode(address, "收货地址解析失败");
+    }
+
+    /**
+     * 两个坐标之间的驾车距离
+     *
+     * @param origin
+     * @param destination
+     * @return
+     */
+    @Cacheable(cacheNames = "drivingDistanceCache", key = "#origin + '|' + #destination", unless = "#result == null")
+    @Override
+    public Integer getDrivingDistance(String origin, String destination) {
+        Map<String, String> map = new HashMap<>();
+        map.put("origin", origin);
+        map.put("destination", destination);
+        map.put("steps_info", "0");
+        map.put("ak", baiduMapProperties.getAk());
+
+        //路线规划
+        JSONObject jsonObject = request("/directionlite/v1/driving", map);
+        if (!"0".equals(jsonObject.getString("status"))) {
+            throw new OrderBusinessException("配送路线规划失败");
+        }
+
+        //数据解析
+        JSONObject result = jsonObject.getJSONObject("result");
+        JSONArray routes = result == null ? null : result.getJSONArray("routes");
+        if (routes == null || routes.isEmpty()) {
+            return null;
+        }
+        return routes.getJSONObject(0).getInteger("distance");
+    }
+
+    /**
+     * 地址解析，返回“纬度,经度”
+     *
+     * @param address
+     * @param errorMessage
+     * @return
+     */
+    private String geocode(String address, String errorMessage) {
+        Map<String, String> map = new HashMap<>();
+        map.put("address", address);
+        map.put("output", "json");
+        map.put("ak", baiduMapProperties.getAk());
+
+        JSONObject jsonObject = request("/geocoding/v3", map);
+        if (!"0".equals(jsonObject.getString("status"))) {
+            throw new OrderBusinessException(errorMessage);
+        }
+
+        //数据解析
+        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
+        return location.getString("lat") + "," + location.getString("lng");
+    }
+
+    /**
+     * 调用百度地图接口
+     * 网络异常、响应状态不是200、响应无法解析以及配额/并发超限时抛出MapServiceUnavailableException，
+     * 其余非0的status（如地址无法解析）由调用方按业务失败处理
+     *
+     * @param path
+     * @param paramMap
+     * @return
+     */
+    private JSONObject request(String path, Map<String, String> paramMap) {
+        JSONObject jsonObject;
+        try {
+            jsonObject = JSON.parseObject(HttpClientUtil.doGetOrThrow(baiduMapProperties.getBaseUrl() + path, paramMap));
+        } catch (Exception e) {
+            throw new MapServiceUnavailableException("百度地图接口调用失败：" + path, e);
+        }
+        if (jsonObject == null) {
+            throw new MapServiceUnavailableException("百度地图接口响应为空：" + path);
+        }
+        if (UNAVAILABLE_STATUS.contains(jsonObject.getString("status"))) {
+            throw new MapServiceUnavailableException("百度地图接口不可用：" + path + "，status=" + jsonObject.getString("status")
+                    + "，message=" + jsonObject.getString("message"));
+        }
+        return jsonObject;
+    }
+}
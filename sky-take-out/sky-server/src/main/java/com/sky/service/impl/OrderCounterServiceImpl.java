@@ -0,0 +1,145 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderCounterService;
+import com.sky.vo.OrderStatisticsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: OrderCounterServiceImpl
+ * Package: com.sky.service.impl
+ * Description: 订单状态计数器，保存在Redis hash中（field为订单状态），
+ * 各节点的状态变化都通过HINCRBY原子更新，管理端轮询时只需一次HMGET，无需扫描订单表
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Service
+@Slf4j
+public class OrderCounterServiceImpl implements OrderCounterService {
+
+    public static final String ORDER_STATUS_COUNT_KEY = "order:status:count";
+
+    // 原状态减1、新状态加1，在一次往返中原子完成；field为空字符串表示不需要更新
+    private static final DefaultRedisScript<Long> TRANSITION_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[1] ~= '' then redis.call('HINCRBY', KEYS[1], ARGV[1], -1) end " +
+                    "if ARGV[2] ~= '' then redis.call('HINCRBY', KEYS[1], ARGV[2], 1) end " +
+                    "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+
+    /**
+     * 订单状态变化，原状态计数减1，新状态计数加1
+     *
+     * @param fromStatus
+     * @param toStatus
+     */
+    @Override
+    public void transition(Integer fromStatus, Integer toStatus) {
+        String fromField = isCounted(fromStatus) ? fromStatus.toString() : "";
+        String toField = isCounted(toStatus) ? toStatus.toString() : "";
+        if (fromField.equals(toField)) {
+            return;
+        }
+
+        // 在事务中时，等事务提交后再更新计数，避免回滚后计数偏差
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doTransition(fromField, toField);
+                }
+            });
+        } else {
+            doTransition(fromField, toField);
+        }
+    }
+
+    /**
+     * 读取各个状态的订单数量，计数器不存在时先从数据库初始化
+     *
+     * @return
+     */
+    @Override
+    public OrderStatisticsVO statistics() {
+        List<Object> counts = stringRedisTemplate.opsForHash().multiGet(ORDER_STATUS_COUNT_KEY, Arrays.asList(
+                Orders.TO_BE_CONFIRMED.toString(), Orders.CONFIRMED.toString(), Orders.DELIVERY_IN_PROGRESS.toString()));
+        if (counts.stream().allMatch(count -> count == null)) {
+            // 直接返回对账时从数据库读到的数量，不再重新读取Redis
+            return reconcile();
+        }
+
+        OrderStatisticsVO orderStatisticsVO = new OrderStatisticsVO();
+        orderStatisticsVO.setToBeConfirmed(toCount(counts.get(0)));
+        orderStatisticsVO.setConfirmed(toCount(counts.get(1)));
+        orderStatisticsVO.setDeliveryInProgress(toCount(counts.get(2)));
+        return orderStatisticsVO;
+    }
+
+    /**
+     * 以数据库为准重新计算计数器
+     *
+     * @return 写入计数器的各个状态的订单数量
+     */
+    @Override
+    public OrderStatisticsVO reconcile() {
+        OrderStatisticsVO statistics = orderMapper.statistics();
+        OrderStatisticsVO orderStatisticsVO = new OrderStatisticsVO();
+        orderStatisticsVO.setToBeConfirmed(toCount(statistics == null ? null : statistics.getToBeConfirmed()));
+        orderStatisticsVO.setConfirmed(toCount(statistics == null ? null : statistics.getConfirmed()));
+        orderStatisticsVO.setDeliveryInProgress(toCount(statistics == null ? null : statistics.getDeliveryInProgress()));
+
+        Map<String, String> counts = new HashMap<>();
+        counts.put(Orders.TO_BE_CONFIRMED.toString(), String.valueOf(orderStatisticsVO.getToBeConfirmed()));
+        counts.put(Orders.CONFIRMED.toString(), String.valueOf(orderStatisticsVO.getConfirmed()));
+        counts.put(Orders.DELIVERY_IN_PROGRESS.toString(), String.valueOf(orderStatisticsVO.getDeliveryInProgress()));
+        stringRedisTemplate.opsForHash().putAll(ORDER_STATUS_COUNT_KEY, counts);
+        log.info("订单状态计数器对账完成：{}", counts);
+        return orderStatisticsVO;
+    }
+
+    private void doTransition(String fromField, String toField) {
+        try {
+            stringRedisTemplate.execute(TRANSITION_SCRIPT, Collections.singletonList(ORDER_STATUS_COUNT_KEY), fromField, toField);
+        } catch (Exception e) {
+            // 计数失败不影响订单流程，由定时对账修正
+            log.error("更新订单状态计数器失败：{} -> {}", fromField, toField, e);
+        }
+    }
+
+    /**
+     * 只统计待接单、待派送、派送中三种状态
+     *
+     * @param status
+     * @return
+     */
+    private boolean isCounted(Integer status) {
+        return Orders.TO_BE_CONFIRMED.equals(status)
+                || Orders.CONFIRMED.equals(status)
+                || Orders.DELIVERY_IN_PROGRESS.equals(status);
+    }
+
+    private int toCount(Object count) {
+        if (count == null) {
+            return 0;
+        }
+        // 并发对账可能短暂出现负数，不对外暴露
+        return Math.max(Integer.parseInt(count.toString()), 0);
+    }
+}
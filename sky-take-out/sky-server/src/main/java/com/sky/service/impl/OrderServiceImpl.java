@@ -1,36 +1,52 @@
 package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.xiaoymin.knife4j.core.util.CollectionUtils;
+import com.sky.cart.ShoppingCartStore;
 import com.sky.constant.MessageConstant;
+import com.sky.constant.PayNotifyStatusConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.mapper.*;
+import com.sky.properties.BaiduMapProperties;
 import com.sky.result.PageResult;
+import com.sky.service.BusinessRollupService;
+import com.sky.service.MapService;
+import com.sky.service.OrderCounterService;
+import com.sky.service.OrderTimeoutService;
 import com.sky.service.OrderService;
-import com.sky.utils.HttpClientUtil;
+import com.sky.service.PriceSnapshotService;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import com.sky.websocket.WebSocketMessageBus;
 import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -52,22 +68,52 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartStore shoppingCartStore;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private PayNotifyLogMapper payNotifyLogMapper;
+
+    @Autowired
+    private BusinessRollupService businessRollupService;
+    @Autowired
+    private OrderCounterService orderCounterService;
+    @Autowired
+    private OrderTimeoutService orderTimeoutService;
+    @Autowired
+    private MapService mapService;
+    @Autowired
+    private BaiduMapProperties baiduMapProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor externalCallExecutor;
+    @Autowired
+    private PriceSnapshotService priceSnapshotService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private SnowflakeIdGenerator orderNumberGenerator;
 
     @Autowired
     private WeChatPayUtil weChatPayUtil;
     @Autowired
-    private WebSocketServer webSocketServer;
+    private WebSocketMessageBus webSocketMessageBus;
+
+    // 当前店铺id，订单提醒只推送给该店铺的管理端
+    @Value("${sky.shop.id:1}")
+    private String shopId;
+
+    // 每单的配送费，单位元，与用户端计算总金额时加上的固定配送费一致
+    @Value("${sky.order.delivery-fee:6}")
+    private BigDecimal deliveryFee;
 
     /**
      * 用户下单
+     * 地址、购物车、价格快照的读取和配送范围校验都在事务之外完成，
+     * 事务中只包含订单、订单明细两条插入语句，缩短行锁和连接的占用时间，每日订单总数在事务提交后再累加
      *
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     @Override
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         // 1. 校验参数，处理各种业务异常（地址簿为空、购物车数据为空）
@@ -78,45 +124,94 @@ public class OrderServiceImpl implements OrderService {
             throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
 
-        // TODO：检查用户的收货地址是否超出配送范围，这里百度地图接口暂时未实现
-//        checkOutOfRange(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
+        // 异步检查用户的收货地址是否超出配送范围，需要配置百度地图ak并开启sky.baidu.enabled
+        // 远程调用在线程池中执行，与下面的购物车查询和金额计算重叠，插入订单前再等待结果
+        CompletableFuture<Void> rangeCheck = baiduMapProperties.isEnabled()
+                ? checkOutOfRangeAsync(addressBook)
+                : CompletableFuture.completedFuture(null);
 
         // 2. 查询当前用户的购物车数据
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartStore.list(userId);
         if (shoppingCartList == null || shoppingCartList.isEmpty()) {
             // 购物车数据为空
             log.info("购物车数据为空");
             throw new AddressBookBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
-        // 3. 向订单表插入1条数据，并返回该条数据的主键id
+        // 3. 按价格快照在服务端计算订单明细和金额，打包费取快照中每个菜品/套餐的打包费，不使用客户端传来的金额
+        List<GoodsPriceDTO> goodsList = lookupGoods(shoppingCartList);
+        List<OrderDetail> orderDetailList = new ArrayList<>(shoppingCartList.size());
+        BigDecimal goodsAmount = BigDecimal.ZERO;
+        BigDecimal packAmount = BigDecimal.ZERO;
+        for (int i = 0; i < shoppingCartList.size(); i++) {
+            ShoppingCart cart = shoppingCartList.get(i);
+            GoodsPriceDTO goods = goodsList.get(i);
+            BigDecimal number = BigDecimal.valueOf(cart.getNumber());
+            orderDetailList.add(new OrderDetail()
+                    .setName(goods.getName())
+                    .setImage(goods.getImage())
+                    .setDishId(cart.getDishId())
+                    .setSetmealId(cart.getSetmealId())
+                    .setDishFlavor(cart.getDishFlavor())
+                    .setNumber(cart.getNumber())
+                    .setAmount(goods.getPrice()));
+            goodsAmount = goodsAmount.add(goods.getPrice().multiply(number));
+            if (goods.getPackAmount() != null) {
+                packAmount = packAmount.add(goods.getPackAmount().multiply(number));
+            }
+        }
+        BigDecimal amount = goodsAmount.add(packAmount).add(deliveryFee);
+        // 客户端展示的打包费或总金额与服务端不一致（如下单前菜品调价），拒绝下单，由用户确认新的金额后重新提交
+        if ((ordersSubmitDTO.getPackAmount() != null && ordersSubmitDTO.getPackAmount().compareTo(packAmount) != 0)
+                || (ordersSubmitDTO.getAmount() != null && ordersSubmitDTO.getAmount().compareTo(amount) != 0)) {
+            log.info("客户端订单金额与服务端计算结果不一致：userId={}, client={}/{}, server={}/{}",
+                    userId, ordersSubmitDTO.getPackAmount(), ordersSubmitDTO.getAmount(), packAmount, amount);
+            throw new OrderBusinessException(MessageConstant.ORDER_AMOUNT_CHANGED);
+        }
+
+        awaitRangeCheck(rangeCheck);
+
         Orders orders = new Orders()
                 .setOrderTime(LocalDateTime.now())  // 订单创建时间
                 .setPayStatus(Orders.UN_PAID)     // 订单支付状态，默认为未支付
                 .setStatus(Orders.PENDING_PAYMENT)  // 订单状态，默认为待支付
-                .setNumber(String.valueOf(System.currentTimeMillis()))  // 订单编号，采用当前时间戳生成
+                .setNumber(orderNumberGenerator.nextIdStr())  // 订单编号，采用雪花算法生成，按时间递增
                 .setPhone(addressBook.getPhone())    // 收货人手机号
                 .setConsignee(addressBook.getConsignee())    // 收货人姓名
-                .setUserId(userId);    // 用户id
-        BeanUtils.copyProperties(ordersSubmitDTO, orders);
-        orderMapper.insert(orders);
-
-        // 4. 向订单明细表插入多条数据，并返回插入的条数
-        ArrayList<OrderDetail> orderDetailArrayList = new ArrayList<>();
-        for (ShoppingCart cart : shoppingCartList) {
-            OrderDetail orderDetail = new OrderDetail()  // 订单明细对象
-                    .setOrderId(orders.getId());  // 设置当前订单明细关联的订单id
-            BeanUtils.copyProperties(cart, orderDetail);  // 将购物车对象属性复制到订单明细对象
-            orderDetailArrayList.add(orderDetail);  // 将订单明细对象添加到集合中
+                .setUserId(userId)    // 用户id
+                .setAddressBookId(addressBook.getId())
+                .setPayMethod(ordersSubmitDTO.getPayMethod())
+                .setRemark(ordersSubmitDTO.getRemark())
+                .setEstimatedDeliveryTime(ordersSubmitDTO.getEstimatedDeliveryTime())
+                .setDeliveryStatus(ordersSubmitDTO.getDeliveryStatus())
+                .setTablewareNumber(ordersSubmitDTO.getTablewareNumber() == null ? 0 : ordersSubmitDTO.getTablewareNumber())
+                .setTablewareStatus(ordersSubmitDTO.getTablewareStatus())
+                .setPackAmount(packAmount)
+                .setAmount(amount);
+
+        // 4. 在一个短事务中插入订单和订单明细
+        transactionTemplate.executeWithoutResult(status -> {
+            // 向订单表插入1条数据，并返回该条数据的主键id
+            orderMapper.insert(orders);
+            // 批量插入订单明细数据（一条多行insert语句）
+            for (OrderDetail orderDetail : orderDetailList) {
+                orderDetail.setOrderId(orders.getId());
+            }
+            orderDetailMapper.insertBatch(orderDetailList);
+            // 登记到延时队列，超过支付期限未支付时自动取消（事务提交后才登记）
+            orderTimeoutService.register(orders.getId(), orders.getOrderTime());
+            // 清空当前用户的购物车数据，购物车在Redis中时事务提交后才清空
+            shoppingCartStore.clear(userId);
+        });
+
+        // 下单当天的订单总数加1，所有订单都更新当天同一行，放在事务提交之后单独执行，不在下单事务中排队等待行锁
+        // 失败时不影响已提交的订单，由RollupTask每晚对账修正
+        try {
+            businessRollupService.onOrderSubmitted(orders);
+        } catch (Exception e) {
+            log.warn("更新每日订单总数失败，等待对账修正：orderId={}", orders.getId(), e);
         }
-        // 批量插入订单明细数据
-        orderDetailMapper.insertBatch(orderDetailArrayList);
-
-        // 清空当前用户的购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
 
         // 返回订单提交成功的VO对象
         return OrderSubmitVO.builder()
@@ -126,6 +221,47 @@ public class OrderServiceImpl implements OrderService {
                 .orderAmount(orders.getAmount()).build();
     }
 
+    /**
+     * 按价格快照查询购物车中每个菜品/套餐的名称、图片、单价和打包费，订单明细和金额均以快照为准
+     * 购物车中的菜品或套餐已删除或已停售时拒绝下单
+     *
+     * @param shoppingCartList
+     * @return 与购物车顺序一致的价格快照
+     */
+    private List<GoodsPriceDTO> lookupGoods(List<ShoppingCart> shoppingCartList) {
+        Map<Long, GoodsPriceDTO> dishPrices = null;
+        Map<Long, GoodsPriceDTO> setmealPrices = null;
+        List<GoodsPriceDTO> goodsList = new ArrayList<>(shoppingCartList.size());
+        for (ShoppingCart cart : shoppingCartList) {
+            GoodsPriceDTO goods;
+            if (cart.getDishId() != null) {
+                if (dishPrices == null) {
+                    dishPrices = toPriceMap(priceSnapshotService.listDishPrices());
+                }
+                goods = dishPrices.get(cart.getDishId());
+            } else {
+                if (setmealPrices == null) {
+                    setmealPrices = toPriceMap(priceSnapshotService.listSetmealPrices());
+                }
+                goods = setmealPrices.get(cart.getSetmealId());
+            }
+            if (goods == null || !StatusConstant.ENABLE.equals(goods.getStatus())) {
+                log.info("购物车中的菜品或套餐已下架：dishId={}, setmealId={}", cart.getDishId(), cart.getSetmealId());
+                throw new OrderBusinessException(MessageConstant.GOODS_NOT_ON_SALE);
+            }
+            goodsList.add(goods);
+        }
+        return goodsList;
+    }
+
+    private Map<Long, GoodsPriceDTO> toPriceMap(List<GoodsPriceDTO> prices) {
+        Map<Long, GoodsPriceDTO> map = new HashMap<>(prices.size() * 2);
+        for (GoodsPriceDTO goods : prices) {
+            map.put(goods.getId(), goods);
+        }
+        return map;
+    }
+
     /**
      * 用户订单支付
      *
@@ -157,51 +293,63 @@ public class OrderServiceImpl implements OrderService {
         // 根据订单号查询当前用户的该订单
         // 替代微信支付成功后的数据库订单状态更新，直接在这里更新了
         Orders ordersDB = orderMapper.getByNumberAndUserId(ordersPaymentDTO.getOrderNumber(), userId);
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
         // 根据address_book_id查询收货地址，拼接成字符串
         AddressBook addressBook = addressBookMapper.getById(ordersDB.getAddressBookId());
         String address = addressBook.getProvinceName() + addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail();
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED) // 订单状态，待接单
-                .payStatus(Orders.PAID) // 支付状态，已支付
-                .checkoutTime(LocalDateTime.now()) // 更新支付时间
-                .address(address) // 收货地址
-                .build();
-        orderMapper.update(orders);
+        // 订单仍为待支付时才更新为已支付、待接单，已超时取消或已支付的订单不能再支付
+        if (orderMapper.paySuccessIfStatus(ordersDB.getNumber(), Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED,
+                Orders.PAID, LocalDateTime.now(), address) == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        orderCounterService.transition(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED);
+        orderTimeoutService.deregister(ordersDB.getId());
 
         // 通过websocker向用户端推送来单提醒消息
         Map map = new HashMap();
         map.put("type", 1); // 1. 来单提醒  2. 客户催单
-        map.put("orderId", orders.getId());
+        map.put("orderId", ordersDB.getId());
         map.put("content", "订单号：" + "商户平台订单号（因为没有实现支付功能，所以用这段文字代替）");
 
         String jsonString = JSON.toJSONString(map); // 将map对象转换为json字符串
-        webSocketServer.sendToAllClient(jsonString);
+        webSocketMessageBus.publish(shopId, WebSocketServer.ROLE_ADMIN, jsonString);
 
         return vo;
     }
 
     /**
      * 用户支付成功，修改订单状态
+     * 支付回调记录和状态更新在同一事务中，交易号唯一索引和待支付状态条件保证并发的重复回调只生效一次
      *
      * @param outTradeNo
+     * @param transactionId
+     * @return
      */
-    public void paySuccess(String outTradeNo) {
-
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+    @Transactional
+    public Integer paySuccess(String outTradeNo, String transactionId) {
+        LocalDateTime now = LocalDateTime.now();
+        // 交易号唯一，重复回调插入失败后直接返回
+        if (payNotifyLogMapper.insertIgnore(transactionId, outTradeNo, now) == 0) {
+            log.info("重复的支付回调，交易号：{}", transactionId);
+            return PayNotifyStatusConstant.DUPLICATE;
+        }
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
-                .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
-                .build();
+        // 只有待支付的订单才更新为已支付、待接单
+        // 已超时取消或已被其他交易支付的订单不做修改，但钱已经收到，记录为需要退款，供退款或人工处理
+        if (orderMapper.paySuccessIfStatus(outTradeNo, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED,
+                Orders.PAID, now, null) == 0) {
+            payNotifyLogMapper.updateStatus(transactionId, PayNotifyStatusConstant.NEED_REFUND);
+            log.error("[PAY_NEED_REFUND] 已收款但订单不是待支付状态，需要退款：outTradeNo={}, transactionId={}",
+                    outTradeNo, transactionId);
+            return PayNotifyStatusConstant.NEED_REFUND;
+        }
 
-        orderMapper.update(orders);
+        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        orderCounterService.transition(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED);
+        orderTimeoutService.deregister(ordersDB.getId());
 
 //        // 通过websocker向客户端推送支付成功消息
 //        Map map = new HashMap();
@@ -211,6 +359,7 @@ public class OrderServiceImpl implements OrderService {
 //
 //        String jsonString = JSON.toJSONString(map);
 //        webSocketServer.sendMsg(jsonString);
+        return PayNotifyStatusConstant.APPLIED;
     }
 
     /**
@@ -233,15 +382,13 @@ public class OrderServiceImpl implements OrderService {
 
         // 查询出订单明细，并封装入OrderVO进行响应
         if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
-
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+            // 一次性批量查询当前页所有订单的明细，按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
 
+            for (Orders orders : page) {
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 list.add(orderVO);
             }
@@ -276,6 +423,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param id
      */
+    @Transactional
     @Override
     public void userCancel(Long id) {
         // 根据id查询订单
@@ -312,6 +460,8 @@ public class OrderServiceImpl implements OrderService {
                 .setCancelReason("用户取消")
                 .setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        businessRollupService.onOrderCancelled(ordersDB);
+        orderCounterService.transition(ordersDB.getStatus(), Orders.CANCELLED);
     }
 
     /**
@@ -339,8 +489,8 @@ public class OrderServiceImpl implements OrderService {
                 })
                 .collect(Collectors.toList()); // 将流中的内容收集到一个新的列表中
 
-        // 将购物车对象批量添加到数据库
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        // 将购物车对象批量添加到购物车
+        shoppingCartStore.addAll(userId, shoppingCartList);
     }
 
     /**
@@ -367,11 +517,15 @@ public class OrderServiceImpl implements OrderService {
 
         List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
+            // 一次性批量查询当前页所有订单的明细，按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
             for (Orders orders : ordersList) {
                 // 将共同字段复制到OrderVO
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders); // 获取订单菜品信息字符串
+                // 获取订单菜品信息字符串
+                String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 // 将订单菜品信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -382,21 +536,38 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 批量查询一页订单的明细，并按订单id分组
      *
-     * @param orders
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 1. 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return new HashMap<>();
+        }
+        // 1. 收集当前页的订单id
+        List<Long> orderIds = ordersList.stream()
+                .map(Orders::getId)
+                .collect(Collectors.toList());
+
+        // 2. 一条 in (...) 语句查询出所有订单明细，按订单id分组
+        return orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
 
-        // 2. 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁 * 3；）
+    /**
+     * 根据订单明细获取菜品信息字符串
+     *
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
+        // 1. 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁 * 3；）
         List<String> orderDishList = orderDetailList.stream()
                 .map(orderDish -> (orderDish.getName() + "*" + orderDish.getNumber() + ";"))
                 .collect(Collectors.toList());
 
-        // 3. 将该订单对应的所有菜品信息拼接在一起
+        // 2. 将该订单对应的所有菜品信息拼接在一起
         return String.join("", orderDishList);
     }
 
@@ -407,8 +578,8 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public OrderStatisticsVO statistics() {
-        // 1. 查询各个状态的订单数量
-        return orderMapper.statistics();
+        // 1. 读取各个状态的订单数量实时计数，无需扫描订单表
+        return orderCounterService.statistics();
     }
 
     /**
@@ -418,12 +589,19 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public void confirm(Long id) {
+        // 查询原状态，用于更新订单状态计数器
+        Orders ordersDB = orderMapper.getById(id);
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+
         Orders orders = Orders.builder()
                 .id(id)
                 .status(Orders.CONFIRMED)
                 .build();
         // 更新订单状态
         orderMapper.update(orders);
+        orderCounterService.transition(ordersDB.getStatus(), Orders.CONFIRMED);
     }
 
     /**
@@ -434,6 +612,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersRejectionDTO
      */
+    @Transactional
     @Override
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) {
         /*业务规则：
@@ -469,6 +648,8 @@ public class OrderServiceImpl implements OrderService {
                 .setCancelTime(LocalDateTime.now());
 
         orderMapper.update(orders);
+        businessRollupService.onOrderCancelled(ordersDB);
+        orderCounterService.transition(ordersDB.getStatus(), Orders.CANCELLED);
     }
 
     /**
@@ -476,6 +657,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersCancelDTO
      */
+    @Transactional
     @Override
     public void adminCancel(OrdersCancelDTO ordersCancelDTO) {
         /*业务规则：
@@ -504,6 +686,11 @@ public class OrderServiceImpl implements OrderService {
                 .setCancelReason(ordersCancelDTO.getCancelReason())
                 .setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        // 已经取消过的订单不重复计数
+        if (!Orders.CANCELLED.equals(ordersDB.getStatus())) {
+            businessRollupService.onOrderCancelled(ordersDB);
+        }
+        orderCounterService.transition(ordersDB.getStatus(), Orders.CANCELLED);
     }
 
     /**
@@ -527,6 +714,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
 
         orderMapper.update(orders);
+        orderCounterService.transition(ordersDB.getStatus(), Orders.DELIVERY_IN_PROGRESS);
     }
 
     /**
@@ -534,6 +722,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param id
      */
+    @Transactional
     @Override
     public void complete(Long id) {
         // 根据id查询订单
@@ -551,75 +740,63 @@ public class OrderServiceImpl implements OrderService {
         orders.setDeliveryTime(LocalDateTime.now());
 
         orderMapper.update(orders);
+        // 累加下单当天的有效订单数、营业额和菜品销量
+        businessRollupService.onOrderCompleted(ordersDB);
+        orderCounterService.transition(ordersDB.getStatus(), Orders.COMPLETED);
     }
 
     /**
-     * 检查客户的收货地址是否超出配送范围
+     * 异步检查客户的收货地址是否超出配送范围
+     * 店铺坐标和收货地址坐标互不依赖，并行解析，两者都完成后再规划路线，总耗时取决于最慢的一次解析加路线规划
+     * 店铺坐标启动时解析一次，收货地址坐标按地址簿id缓存，距离按起终点坐标缓存，命中缓存时不发起远程调用
      *
-     * @param address
+     * @param addressBook
+     * @return
      */
-    @Value("${sky.shop.address}")
-    private String shopAddress;
-    @Value("${sky.baidu.ak}")
-    private String ak;
-
-    private void checkOutOfRange(String address) {
-        Map map = new HashMap();
-        map.put("address", shopAddress);
-        map.put("output", "json");
-        map.put("ak", ak);
-
-        //获取店铺的经纬度坐标
-        String shopCoordinate = HttpClientUtil.doGet("https://api.map.baidu.com/geocoding/v3", map);
-
-        JSONObject jsonObject = JSON.parseObject(shopCoordinate);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("店铺地址解析失败");
-        }
-
-        //数据解析
-        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
-        String lat = location.getString("lat");
-        String lng = location.getString("lng");
-        //店铺经纬度坐标
-        String shopLngLat = lat + "," + lng;
-
-        map.put("address", address);
-        //获取用户收货地址的经纬度坐标
-        String userCoordinate = HttpClientUtil.doGet("https://api.map.baidu.com/geocoding/v3", map);
-
-        jsonObject = JSON.parseObject(userCoordinate);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("收货地址解析失败");
-        }
-
-        //数据解析
-        location = jsonObject.getJSONObject("result").getJSONObject("location");
-        lat = location.getString("lat");
-        lng = location.getString("lng");
-        //用户收货地址经纬度坐标
-        String userLngLat = lat + "," + lng;
-
-        map.put("origin", shopLngLat);
-        map.put("destination", userLngLat);
-        map.put("steps_info", "0");
-
-        //路线规划
-        String json = HttpClientUtil.doGet("https://api.map.baidu.com/directionlite/v1/driving", map);
-
-        jsonObject = JSON.parseObject(json);
-        if (!jsonObject.getString("status").equals("0")) {
-            throw new OrderBusinessException("配送路线规划失败");
+    private CompletableFuture<Void> checkOutOfRangeAsync(AddressBook addressBook) {
+        try {
+            CompletableFuture<String> shopLocation = CompletableFuture.supplyAsync(
+                    mapService::getShopLocation, externalCallExecutor);
+            CompletableFuture<String> userLocation = CompletableFuture.supplyAsync(
+                    () -> mapService.getAddressLocation(addressBook), externalCallExecutor);
+
+            return shopLocation
+                    .thenCombineAsync(userLocation, mapService::getDrivingDistance, externalCallExecutor)
+                    .orTimeout(baiduMapProperties.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .thenAccept(distance -> {
+                        if (distance == null) {
+                            // 路线规划成功但没有返回距离（如没有可行驶路线），无法判断，按地图服务不可用放行
+                            log.warn("路线规划没有返回配送距离，跳过配送范围校验：addressBookId={}", addressBook.getId());
+                            return;
+                        }
+                        if (distance > baiduMapProperties.getDeliveryRange()) {
+                            //配送距离超过最大配送距离
+                            throw new OrderBusinessException("超出配送范围");
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，降级为不校验
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
-        //数据解析
-        JSONObject result = jsonObject.getJSONObject("result");
-        JSONArray jsonArray = (JSONArray) result.get("routes");
-        Integer distance = (Integer) ((JSONObject) jsonArray.get(0)).get("distance");
-
-        if (distance > 5000) {
-            //配送距离超过5000米
-            throw new OrderBusinessException("超出配送范围");
+    /**
+     * 等待配送范围校验结果
+     * 超出配送范围、地址无法解析等业务异常直接抛出；
+     * 超时、线程池已满、地图服务不可用（MapServiceUnavailableException：网络异常、非200响应、配额超限等）降级为放行，
+     * 避免地图服务故障导致无法下单
+     *
+     * @param rangeCheck
+     */
+    private void awaitRangeCheck(CompletableFuture<Void> rangeCheck) {
+        try {
+            rangeCheck.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof OrderBusinessException) {
+                throw (OrderBusinessException) cause;
+            }
+            log.warn("配送范围校验失败，跳过校验：{}", cause.toString());
         }
     }
 
@@ -645,6 +822,6 @@ public class OrderServiceImpl implements OrderService {
         map.put("content", "订单号：" + ordersDB.getNumber());
 
         String jsonString = JSON.toJSONString(map); // 将map对象转换为json字符串
-        webSocketServer.sendToAllClient(jsonString);
+        webSocketMessageBus.publish(shopId, WebSocketServer.ROLE_ADMIN, jsonString);
     }
 }
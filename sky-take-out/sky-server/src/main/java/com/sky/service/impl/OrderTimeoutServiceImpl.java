@@ -0,0 +1,187 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessRollupService;
+import com.sky.service.OrderTimeoutService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ClassName: OrderTimeoutServiceImpl
+ * Package: com.sky.service.impl
+ * Description: 待支付订单的超时取消
+ * 延时队列为Redis有序集合，member为订单id，score为支付截止时间（毫秒时间戳）
+ * 轮询时只读取score小于当前时间的少量订单，通过ZREM的返回值抢占，多个节点同时轮询也只会有一个节点处理同一订单
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Service
+@Slf4j
+public class OrderTimeoutServiceImpl implements OrderTimeoutService {
+
+    public static final String ORDER_PAYMENT_TIMEOUT_KEY = "order:payment:timeout";
+
+    private static final String TIMEOUT_CANCEL_REASON = "订单超时，系统自动取消订单";
+
+    // 每次从延时队列中取出的最大订单数
+    private static final int BATCH_SIZE = 100;
+
+    // 取消失败的订单推迟多久后重试
+    private static final long RETRY_DELAY_MILLIS = 30000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private BusinessRollupService businessRollupService;
+
+    // 待支付订单的支付期限，单位分钟
+    @Value("${sky.order.payment-timeout-minutes:15}")
+    private long paymentTimeoutMinutes;
+
+    /**
+     * 登记待支付订单，到达支付截止时间后自动取消
+     *
+     * @param orderId
+     * @param orderTime 下单时间
+     */
+    @Override
+    public void register(Long orderId, LocalDateTime orderTime) {
+        double deadline = deadline(orderTime);
+        // 在事务中时，等事务提交后再登记，避免回滚后队列中残留不存在的订单
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doRegister(orderId, deadline);
+                }
+            });
+        } else {
+            doRegister(orderId, deadline);
+        }
+    }
+
+    /**
+     * 订单已支付，取消登记
+     *
+     * @param orderId
+     */
+    @Override
+    public void deregister(Long orderId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(ORDER_PAYMENT_TIMEOUT_KEY, orderId.toString());
+        } catch (Exception e) {
+            // 取消登记失败时，到期后的条件更新也不会取消已支付的订单
+            log.error("取消登记待支付订单失败：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 取消所有已到期的待支付订单
+     *
+     * @return 本次取消的订单数
+     */
+    @Override
+    public int processDue() {
+        int cancelled = 0;
+        while (true) {
+            Set<String> dueOrderIds = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(ORDER_PAYMENT_TIMEOUT_KEY, 0, System.currentTimeMillis(), 0, BATCH_SIZE);
+            if (dueOrderIds == null || dueOrderIds.isEmpty()) {
+                return cancelled;
+            }
+
+            for (String orderId : dueOrderIds) {
+                // 先取消再移除：条件更新保证多个节点同时处理同一订单时只有一个能取消成功，
+                // 取消失败或节点在两步之间宕机时订单仍留在队列中，不会漏掉
+                try {
+                    if (cancel(Long.valueOf(orderId))) {
+                        cancelled++;
+                    }
+                    stringRedisTemplate.opsForZSet().remove(ORDER_PAYMENT_TIMEOUT_KEY, orderId);
+                } catch (Exception e) {
+                    // 推迟该订单的到期时间后重试，避免同一批失败的订单被反复读取
+                    log.error("取消超时订单失败，稍后重试：{}", orderId, e);
+                    stringRedisTemplate.opsForZSet().add(ORDER_PAYMENT_TIMEOUT_KEY, orderId,
+                            System.currentTimeMillis() + RETRY_DELAY_MILLIS);
+                }
+            }
+
+            if (dueOrderIds.size() < BATCH_SIZE) {
+                return cancelled;
+            }
+        }
+    }
+
+    /**
+     * 启动时把数据库中所有待支付订单重新登记到延时队列
+     * 已过期的订单会在下一次轮询时立即取消，ZADD对已登记的订单是幂等的
+     */
+    @Override
+    public void recover() {
+        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, LocalDateTime.now().plusMinutes(1));
+        if (ordersList == null || ordersList.isEmpty()) {
+            log.info("没有需要恢复的待支付订单");
+            return;
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (Orders orders : ordersList) {
+            tuples.add(new DefaultTypedTuple<>(orders.getId().toString(), deadline(orders.getOrderTime())));
+        }
+        stringRedisTemplate.opsForZSet().add(ORDER_PAYMENT_TIMEOUT_KEY, tuples);
+        log.info("恢复待支付订单到延时队列：{}条", tuples.size());
+    }
+
+    private void doRegister(Long orderId, double deadline) {
+        try {
+            stringRedisTemplate.opsForZSet().add(ORDER_PAYMENT_TIMEOUT_KEY, orderId.toString(), deadline);
+        } catch (Exception e) {
+            // 登记失败不影响下单，下次启动恢复时会重新登记
+            log.error("登记待支付订单失败：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 订单仍为待支付时将其取消
+     *
+     * @param orderId
+     * @return 是否取消成功
+     */
+    private boolean cancel(Long orderId) {
+        Orders ordersDB = orderMapper.getById(orderId);
+        if (ordersDB == null || !Orders.PENDING_PAYMENT.equals(ordersDB.getStatus())) {
+            return false;
+        }
+        // 条件更新，并发支付成功的订单不会被取消
+        int rows = orderMapper.cancelIfStatus(orderId, Orders.PENDING_PAYMENT, Orders.CANCELLED,
+                TIMEOUT_CANCEL_REASON, LocalDateTime.now());
+        if (rows == 0) {
+            return false;
+        }
+        businessRollupService.onOrderCancelled(ordersDB);
+        log.info("订单超时，自动取消：{}", orderId);
+        return true;
+    }
+
+    private double deadline(LocalDateTime orderTime) {
+        return orderTime.plusMinutes(paymentTimeoutMinutes)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
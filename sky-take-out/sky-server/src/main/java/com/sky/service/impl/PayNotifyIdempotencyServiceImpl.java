@@ -0,0 +1,63 @@
+package com.sky.service.impl;
+
+import com.sky.service.PayNotifyIdempotencyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * ClassName: PayNotifyIdempotencyServiceImpl
+ * Package: com.sky.service.impl
+ * Description: 基于Redis的支付回调去重，key为 pay:notify:{微信支付交易号}
+ * 处理中的值为processing，过期时间较短，避免进程宕机后一直占用；处理完成后改为done，保留到微信停止重试之后
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Service
+public class PayNotifyIdempotencyServiceImpl implements PayNotifyIdempotencyService {
+
+    private static final String KEY_PREFIX = "pay:notify:";
+    private static final String PROCESSING = "processing";
+    private static final String DONE = "done";
+
+    // 单次处理的最长占用时间
+    private static final Duration PROCESSING_TTL = Duration.ofMinutes(1);
+    // 微信在约24小时内重试通知，处理完成的记录保留2天
+    private static final Duration DONE_TTL = Duration.ofDays(2);
+
+    // 仍处于处理中时才删除，避免删掉已经标记为完成的记录
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public boolean tryBegin(String transactionId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key(transactionId), PROCESSING, PROCESSING_TTL));
+    }
+
+    @Override
+    public boolean isProcessed(String transactionId) {
+        return DONE.equals(stringRedisTemplate.opsForValue().get(key(transactionId)));
+    }
+
+    @Override
+    public void markProcessed(String transactionId) {
+        stringRedisTemplate.opsForValue().set(key(transactionId), DONE, DONE_TTL);
+    }
+
+    @Override
+    public void release(String transactionId) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key(transactionId)), PROCESSING);
+    }
+
+    private String key(String transactionId) {
+        return KEY_PREFIX + transactionId;
+    }
+}
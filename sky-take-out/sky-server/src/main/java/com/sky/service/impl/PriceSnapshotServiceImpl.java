@@ -0,0 +1,39 @@
+package com.sky.service.impl;
+
+import com.sky.dto.GoodsPriceDTO;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.service.PriceSnapshotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * ClassName: PriceSnapshotServiceImpl
+ * Package: com.sky.service.impl
+ * Description: 菜品、套餐的价格快照，整表只有一次查询，缓存key为priceSnapshotCache::dish 和 priceSnapshotCache::setmeal
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Service
+public class PriceSnapshotServiceImpl implements PriceSnapshotService {
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Override
+    @Cacheable(cacheNames = "priceSnapshotCache", key = "'dish'")
+    public List<GoodsPriceDTO> listDishPrices() {
+        return dishMapper.listPrices();
+    }
+
+    @Override
+    @Cacheable(cacheNames = "priceSnapshotCache", key = "'setmeal'")
+    public List<GoodsPriceDTO> listSetmealPrices() {
+        return setmealMapper.listPrices();
+    }
+}
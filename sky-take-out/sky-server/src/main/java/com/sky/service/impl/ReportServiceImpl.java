@@ -1,7 +1,9 @@
 package com.sky.service.impl;
 
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.BusinessDailyRollup;
 import com.sky.entity.Orders;
+import com.sky.mapper.BusinessDailyRollupMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
 import com.sky.service.ReportService;
@@ -11,17 +13,30 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.poi.xssf.streaming.SXSSFCell;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +51,13 @@ import java.util.stream.Collectors;
 @Service
 @Slf4j
 public class ReportServiceImpl implements ReportService {
+    // 导出Excel时内存中保留的行数，超出的行会被刷写到临时文件
+    private static final int ROW_ACCESS_WINDOW = 100;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] ORDER_STATUS_TEXT = {"", "待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+
+    @Autowired
+    private BusinessDailyRollupMapper businessDailyRollupMapper;
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
@@ -51,25 +73,16 @@ public class ReportServiceImpl implements ReportService {
     @Override
     public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
         // 当前集合用户存放从startDate到endDate范围内的每天的日期
-        List<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
-        LocalDate currentDate = begin; // 使用一个额外的日期变量来追踪当前日期
-        while (!currentDate.equals(end)) {
-            currentDate = currentDate.plusDays(1);
-            dateList.add(currentDate);
-        }
+        List<LocalDate> dateList = getDateList(begin, end);
+
+        // 从每日汇总表读取，营业额：当天状态是“已完成”的订单的总金额
+        Map<LocalDate, BusinessDailyRollup> rollupMap = getRollupMap(begin, end);
+
+        // 没有汇总数据的日期补0
         List<Double> turnoverList = new ArrayList<>();
         for (LocalDate date : dateList) {
-            // 查询每天的营业额，营业额：当天状态是“已完成”的订单的总金额
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            Map map = new HashMap();
-            map.put("begin", beginTime);
-            map.put("end", endTime);
-            map.put("status", Orders.COMPLETED);
-            Double turnover = orderMapper.sumTurnoverByDate(map);
-            turnover = turnover == null ? 0.0 : turnover;
-            turnoverList.add(turnover);
+            BusinessDailyRollup rollup = rollupMap.get(date);
+            turnoverList.add(rollup == null ? 0.0 : rollup.getTurnover().doubleValue());
         }
         return TurnoverReportVO.builder()
                 .dateList(StringUtils.join(dateList, ","))
@@ -87,35 +100,29 @@ public class ReportServiceImpl implements ReportService {
     @Override
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
         //存放从begin到end之间的每天对应的日期
-        List<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
-        LocalDate currentDate = begin; // 使用一个额外的日期变量来追踪当前日期
-        while (!currentDate.equals(end)) {
-            currentDate = currentDate.plusDays(1);
-            dateList.add(currentDate);
-        }
+        List<LocalDate> dateList = getDateList(begin, end);
+
+        //从每日汇总表读取区间内每天的新增用户数量
+        Map<LocalDate, BusinessDailyRollup> rollupMap = getRollupMap(begin, end);
 
-        //存放每天的新增用户数量 select count(id) from user where create_time < ? and create_time > ?
+        //区间开始之前的用户总数，作为前缀和的初始值，直接统计用户表，不依赖汇总表覆盖的日期范围
+        Map<String, Object> map = new HashMap<>();
+        map.put("end", LocalDateTime.of(begin.minusDays(1), LocalTime.MAX));
+        Integer baseTotal = userMapper.countByMap(map);
+        int totalUser = baseTotal == null ? 0 : baseTotal;
+
+        //存放每天的新增用户数量
         List<Integer> newUserList = new ArrayList<>();
-        //存放每天的总用户数量 select count(id) from user where create_time < ?
+        //存放每天的总用户数量，由新增用户数量累加得到
         List<Integer> totalUserList = new ArrayList<>();
 
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            Map map = new HashMap();
-            map.put("end", endTime);
-
-            //总用户数量
-            Integer totalUser = userMapper.countByMap(map);
+            BusinessDailyRollup rollup = rollupMap.get(date);
+            Integer newUser = rollup == null ? 0 : rollup.getNewUserCount();
+            totalUser += newUser;
 
-            map.put("begin", beginTime);
-            //新增用户数量
-            Integer newUser = userMapper.countByMap(map);
-
-            totalUserList.add(totalUser);
             newUserList.add(newUser);
+            totalUserList.add(totalUser);
         }
         //封装结果数据
         return UserReportVO
@@ -136,30 +143,21 @@ public class ReportServiceImpl implements ReportService {
     @Override
     public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
         //存放从begin到end之间的每天对应的日期
-        List<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
-        LocalDate currentDate = begin; // 使用一个额外的日期变量来追踪当前日期
-        while (!currentDate.equals(end)) {
-            currentDate = currentDate.plusDays(1);
-            dateList.add(currentDate);
-        }
+        List<LocalDate> dateList = getDateList(begin, end);
+
+        //从每日汇总表读取区间内的订单总数和有效订单数
+        Map<LocalDate, BusinessDailyRollup> rollupMap = getRollupMap(begin, end);
+
         //存放每天的订单总数
         List<Integer> orderCountList = new ArrayList<>();
         //存放每天的有效订单数
         List<Integer> validOrderCountList = new ArrayList<>();
 
-        //遍历dateList集合，查询每天的有效订单数和订单总数
+        //遍历dateList集合，没有汇总数据的日期补0
         for (LocalDate date : dateList) {
-            //查询每天的订单总数 select count(id) from orders where order_time > ? and order_time < ?
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            Integer orderCount = getOrderCount(beginTime, endTime, null);
-
-            //查询每天的有效订单数 select count(id) from orders where order_time > ? and order_time < ? and status = 5
-            Integer validOrderCount = getOrderCount(beginTime, endTime, Orders.COMPLETED);
-
-            orderCountList.add(orderCount);
-            validOrderCountList.add(validOrderCount);
+            BusinessDailyRollup rollup = rollupMap.get(date);
+            orderCountList.add(rollup == null ? 0 : rollup.getOrderCount());
+            validOrderCountList.add(rollup == null ? 0 : rollup.getValidOrderCount());
         }
 
         //计算时间区间内的订单总数量
@@ -189,20 +187,31 @@ public class ReportServiceImpl implements ReportService {
     }
 
     /**
-     * 根据条件统计订单数量
+     * 获取从begin到end之间（包含两端）的每一天
      *
      * @param begin
      * @param end
-     * @param status
      * @return
      */
-    private Integer getOrderCount(LocalDateTime begin, LocalDateTime end, Integer status) {
-        Map map = new HashMap();
-        map.put("begin", begin);
-        map.put("end", end);
-        map.put("status", status);
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        List<LocalDate> dateList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dateList.add(date);
+        }
+        return dateList;
+    }
 
-        return orderMapper.countByMap(map);
+    /**
+     * 读取区间内的每日汇总数据，以日期为key，只需读取O(天数)行
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, BusinessDailyRollup> getRollupMap(LocalDate begin, LocalDate end) {
+        return businessDailyRollupMapper.list(begin, end)
+                .stream()
+                .collect(Collectors.toMap(BusinessDailyRollup::getDate, Function.identity()));
     }
 
     /**
@@ -214,10 +223,8 @@ public class ReportServiceImpl implements ReportService {
      */
     @Override
     public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
-        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
-        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
-
-        List<GoodsSalesDTO> salesTop10 = orderMapper.getSalesTop10(beginTime, endTime);
+        // 从每日菜品销量汇总表读取
+        List<GoodsSalesDTO> salesTop10 = businessDailyRollupMapper.getSalesTop10(begin, end);
         List<String> names = salesTop10.stream()
                 .map(GoodsSalesDTO::getName)
                 .collect(Collectors.toList());
@@ -238,11 +245,150 @@ public class ReportServiceImpl implements ReportService {
 
     /**
      * 导出运营数据报表
+     * 使用SXSSFWorkbook流式写入，内存中只保留最近ROW_ACCESS_WINDOW行，其余行写入临时文件，
+     * 订单明细通过游标逐行读取，因此无论导出区间多长，内存占用都保持平稳
+     * 写入失败时异常向上抛出：响应尚未提交时返回错误状态，已提交时连接被中断，客户端不会把不完整的文件当作成功
      *
+     * @param begin
+     * @param end
      * @param response
+     * @throws IOException
      */
+    @Transactional(readOnly = true) // 游标需要在事务（同一个SqlSession）中遍历
     @Override
-    public void exportBusinessData(HttpServletResponse response) {
+    public void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true); // 压缩临时文件，减少磁盘占用
+        try {
+            // 1. 运营数据：概览 + 每日明细
+            writeBusinessDataSheet(workbook, begin, end);
+
+            // 2. 订单明细
+            writeOrderSheet(workbook, begin, end);
 
+            // 3. 直接写入响应输出流
+            String fileName = URLEncoder.encode("运营数据报表" + begin + "_" + end + ".xlsx", StandardCharsets.UTF_8.name());
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader("Content-Disposition", "attachment;filename=" + fileName);
+            ServletOutputStream out = response.getOutputStream();
+            workbook.write(out);
+            out.flush();
+        } catch (IOException e) {
+            log.error("导出运营数据报表失败：{},{}", begin, end, e);
+            throw e;
+        } finally {
+            // 删除临时文件
+            workbook.dispose();
+        }
+    }
+
+    /**
+     * 写入运营数据sheet：第一部分为区间概览，第二部分为每日明细（来自每日汇总表）
+     *
+     * @param workbook
+     * @param begin
+     * @param end
+     */
+    private void writeBusinessDataSheet(SXSSFWorkbook workbook, LocalDate begin, LocalDate end) {
+        SXSSFSheet sheet = workbook.createSheet("运营数据");
+        Map<LocalDate, BusinessDailyRollup> rollupMap = getRollupMap(begin, end);
+
+        // 区间概览
+        BigDecimal totalTurnover = BigDecimal.ZERO;
+        int totalOrderCount = 0;
+        int totalValidOrderCount = 0;
+        int totalNewUsers = 0;
+        for (BusinessDailyRollup rollup : rollupMap.values()) {
+            totalTurnover = totalTurnover.add(rollup.getTurnover());
+            totalOrderCount += rollup.getOrderCount();
+            totalValidOrderCount += rollup.getValidOrderCount();
+            totalNewUsers += rollup.getNewUserCount();
+        }
+        writeRow(sheet, 0, "时间：" + begin + "至" + end);
+        writeRow(sheet, 1, "营业额", "订单完成率", "新增用户数", "有效订单", "平均客单价");
+        writeRow(sheet, 2, totalTurnover.doubleValue(),
+                totalOrderCount == 0 ? 0.0 : (double) totalValidOrderCount / totalOrderCount,
+                totalNewUsers,
+                totalValidOrderCount,
+                totalValidOrderCount == 0 ? 0.0 : totalTurnover.doubleValue() / totalValidOrderCount);
+
+        // 每日明细
+        writeRow(sheet, 4, "日期", "营业额", "有效订单", "订单总数", "订单完成率", "平均客单价", "新增用户数");
+        int rowNum = 5;
+        for (LocalDate date : getDateList(begin, end)) {
+            BusinessDailyRollup rollup = rollupMap.get(date);
+            if (rollup == null) {
+                writeRow(sheet, rowNum++, date.toString(), 0.0, 0, 0, 0.0, 0.0, 0);
+                continue;
+            }
+            double turnover = rollup.getTurnover().doubleValue();
+            int validOrderCount = rollup.getValidOrderCount();
+            int orderCount = rollup.getOrderCount();
+            writeRow(sheet, rowNum++, date.toString(), turnover, validOrderCount, orderCount,
+                    orderCount == 0 ? 0.0 : (double) validOrderCount / orderCount,
+                    validOrderCount == 0 ? 0.0 : turnover / validOrderCount,
+                    rollup.getNewUserCount());
+        }
+    }
+
+    /**
+     * 写入订单明细sheet，通过游标逐行读取订单，逐行写入
+     *
+     * @param workbook
+     * @param begin
+     * @param end
+     * @throws IOException
+     */
+    private void writeOrderSheet(SXSSFWorkbook workbook, LocalDate begin, LocalDate end) throws IOException {
+        SXSSFSheet sheet = workbook.createSheet("订单明细");
+        writeRow(sheet, 0, "订单号", "下单时间", "订单状态", "实收金额", "收货人", "手机号", "地址");
+
+        int rowNum = 1;
+        try (Cursor<Orders> cursor = orderMapper.cursorByOrderTime(
+                LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX))) {
+            for (Orders orders : cursor) {
+                writeRow(sheet, rowNum++,
+                        orders.getNumber(),
+                        orders.getOrderTime() == null ? "" : orders.getOrderTime().format(DATE_TIME_FORMATTER),
+                        getStatusText(orders.getStatus()),
+                        orders.getAmount() == null ? 0.0 : orders.getAmount().doubleValue(),
+                        orders.getConsignee(),
+                        orders.getPhone(),
+                        orders.getAddress());
+            }
+        }
+    }
+
+    /**
+     * 写入一行数据，数字类型写为数值单元格，其余写为文本单元格
+     *
+     * @param sheet
+     * @param rowNum
+     * @param values
+     */
+    private void writeRow(SXSSFSheet sheet, int rowNum, Object... values) {
+        SXSSFRow row = sheet.createRow(rowNum);
+        for (int i = 0; i < values.length; i++) {
+            SXSSFCell cell = row.createCell(i);
+            Object value = values[i];
+            if (value instanceof Number) {
+                cell.setCellValue(((Number) value).doubleValue());
+            } else {
+                cell.setCellValue(value == null ? "" : value.toString());
+            }
+        }
+    }
+
+    /**
+     * 订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+     *
+     * @param status
+     * @return
+     */
+    private String getStatusText(Integer status) {
+        if (status == null || status < 1 || status >= ORDER_STATUS_TEXT.length) {
+            return "";
+        }
+        return ORDER_STATUS_TEXT[status];
     }
 }
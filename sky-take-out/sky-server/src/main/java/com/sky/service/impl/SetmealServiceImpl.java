@@ -22,6 +22,9 @@ import com.sky.vo.SetmealVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -52,6 +55,10 @@ public class SetmealServiceImpl implements SetmealService {
      * @param setmealDTO
      */
     @Transactional // 开启事务，涉及到两个表（setmeal表和setmeal_dish表），需要事务保持一致性
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "setmealCache", allEntries = true), // 新套餐所属分类的套餐列表缓存失效
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'setmeal'") // 下单使用的套餐价格快照
+    })
     @Override
     public void save(SetmealDTO setmealDTO) {
         Setmeal setmeal = new Setmeal();
@@ -119,6 +126,11 @@ public class SetmealServiceImpl implements SetmealService {
      * @param ids
      */
     @Transactional // 开启事务，涉及到两个表（setmeal表和setmeal_dish表），需要事务保持一致性
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "setmealCache", allEntries = true),
+            @CacheEvict(cacheNames = "setmealDishCache", allEntries = true),
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'setmeal'") // 下单使用的套餐价格快照
+    })
     @Override
     public void deleteSetmealByIds(List<Long> ids) {
         // 判断当前套餐是否能够删除--是否存在起售中的套餐
@@ -143,6 +155,11 @@ public class SetmealServiceImpl implements SetmealService {
      * @param setmealDTO
      */
     @Transactional // 开启事务，涉及到两个表（setmeal表和setmeal_dish表），需要事务保持一致性
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "setmealCache", allEntries = true),
+            @CacheEvict(cacheNames = "setmealDishCache", key = "#setmealDTO.id"),
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'setmeal'") // 下单使用的套餐价格快照
+    })
     @Override
     public void updateSetmeal(SetmealDTO setmealDTO) {
         // 1. 更新套餐表setmeal中数据
@@ -169,6 +186,10 @@ public class SetmealServiceImpl implements SetmealService {
      * @param status
      * @param id
      */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "setmealCache", allEntries = true), // 起售、停售会改变C端套餐列表
+            @CacheEvict(cacheNames = "priceSnapshotCache", key = "'setmeal'") // 下单使用的套餐价格快照
+    })
     @Override
     public void updateSetmealStatus(Integer status, Long id) {
         // 1. 查询指定id的套餐信息，若套餐内存在未起售的菜品，则无法起售套餐（dish表中status=0是未起售菜品）
@@ -187,10 +208,11 @@ public class SetmealServiceImpl implements SetmealService {
     }
 
     /**
-     * 条件查询
+     * 条件查询（C端只查询起售中的套餐，因此按分类id缓存）
      * @param setmeal
      * @return
      */
+    @Cacheable(cacheNames = "setmealCache", key = "#setmeal.categoryId") // key:setmealCache::categoryId
     public List<Setmeal> list(Setmeal setmeal) {
         List<Setmeal> list = setmealMapper.list(setmeal);
         return list;
@@ -201,6 +223,7 @@ public class SetmealServiceImpl implements SetmealService {
      * @param id
      * @return
      */
+    @Cacheable(cacheNames = "setmealDishCache", key = "#id") // key:setmealDishCache::id
     public List<DishItemVO> getDishItemById(Long id) {
         return setmealMapper.getDishItemBySetmealId(id);
     }
@@ -8,6 +8,7 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.BusinessRollupService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -36,6 +37,8 @@ public class UserServiceImpl implements UserService {
     private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private BusinessRollupService businessRollupService;
 
     /**
      * 微信登陆
@@ -63,6 +66,8 @@ public class UserServiceImpl implements UserService {
                     .build();
             // 新增用户
             userMapper.insert(user);
+            // 注册当天的新增用户数加1
+            businessRollupService.onUserRegistered(user.getCreateTime().toLocalDate());
         }
         // 如果openId存在，则直接返回用户信息
 
@@ -1,14 +1,25 @@
 package com.sky.task;
 
 import com.sky.entity.Orders;
+import com.sky.lease.JobLease;
+import com.sky.lease.JobLeaseManager;
+import com.sky.lease.JobShard;
 import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessRollupService;
+import com.sky.service.OrderCounterService;
+import com.sky.service.OrderTimeoutService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.function.IntSupplier;
 
 /**
  * ClassName: OrderTask
@@ -24,50 +35,140 @@ import java.util.List;
 public class OrderTask {
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private BusinessRollupService businessRollupService;
+    @Autowired
+    private OrderCounterService orderCounterService;
+    @Autowired
+    private OrderTimeoutService orderTimeoutService;
+    @Autowired
+    private JobLeaseManager jobLeaseManager;
+
+    // 待支付订单的支付期限，单位分钟
+    @Value("${sky.order.payment-timeout-minutes:15}")
+    private long paymentTimeoutMinutes;
+
+    // 批量状态流转时每批更新的行数，控制单条语句的锁持有时间
+    @Value("${sky.order.batch-size:500}")
+    private int batchSize;
 
     /**
-     * 处理超时订单的方法，每分钟执行一次
+     * 启动时先分批取消停机期间已超时的待支付订单，再把剩余的待支付订单恢复到延时队列
+     * 多个节点同时启动时只有获取到租约的节点执行
      */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverTimeOrder() {
+        Duration ttl = Duration.ofMinutes(10);
+        jobLeaseManager.runWithLease("order-timeout-recover", ttl, lease -> {
+            log.info("恢复待支付订单到延时队列：{}", LocalDateTime.now());
+
+            // 每批更新前续期租约，并在fencing token保护下写入，租约被其他节点接管后立即停止
+            int cancelled = updateStatusInBatches(Orders.PENDING_PAYMENT, Orders.CANCELLED,
+                    LocalDateTime.now().minusMinutes(paymentTimeoutMinutes), "订单超时，系统自动取消订单",
+                    new JobShard(0, 1), lease, ttl);
+            log.info("批量取消停机期间超时的待支付订单：{}个", cancelled);
+            if (cancelled > 0) {
+                LocalDate dirtyFrom = businessRollupService.pollDirtyFrom();
+                if (dirtyFrom != null) {
+                    businessRollupService.reconcile(dirtyFrom, LocalDate.now());
+                }
+            }
+
+            orderTimeoutService.recover();
+        });
+    }
+
     /**
-     * 0 * * * ? 表示的是每小时的整数分钟时刻执行一次任务。
-     * 0 秒钟字段，表示每分钟的第0秒执行。
-     * 第一个* 为分钟字段，表示每一分钟。
-     * 第二个* 为小时字段，表示每小时。
-     * 第三个* 为天字段，表示每天。
-     * 第四个* 为月字段，表示每月。
-     * 第五个*? 为星期字段，? 表示不指定具体的星期几。
+     * 处理超时订单的方法，每秒从延时队列中取出已到期的待支付订单并取消
+     * 只访问到期的订单，不再每分钟扫描订单表，取消最多延迟1秒
+     * 各节点都会轮询，通过ZREM抢占订单，同一订单只会被一个节点处理，因此不需要租约
      */
-    @Scheduled(cron = "0 * * * * ?")
+    @Scheduled(fixedDelay = 1000)
     public void processTimeOrder() {
-        log.info("定时处理超时订单：{}", LocalDateTime.now());
-
-        // select * from orders where sataus = ? and order_time < (当前时间-15分钟)
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, LocalDateTime.now().minusMinutes(15));
-        if (ordersList != null && !ordersList.isEmpty()) {
-            for (Orders order : ordersList) {
-                order.setStatus(Orders.CANCELLED)
-                        .setCancelReason("订单超时，系统自动取消订单")
-                        .setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
-            }
+        int cancelled = orderTimeoutService.processDue();
+        if (cancelled > 0) {
+            log.info("定时处理超时订单，取消{}个订单：{}", cancelled, LocalDateTime.now());
         }
-        log.info("定时处理超时订单结束：{}", LocalDateTime.now());
     }
 
     /**
      * 处理一直处于派送中状态的订单的方法，每天凌晨1点执行一次
+     * 各节点按订单id分片，只处理属于自己的订单，节点越多单个节点处理的订单越少
      */
     @Scheduled(cron = "0 0 1 * * ?")
     public void processDeliveryOrder() {
-        log.info("定时处理派送中订单：{}", LocalDateTime.now());
+        // 各节点按当天的同一份节点快照计算分片
+        JobShard shard = jobLeaseManager.currentShard("order-delivery-complete", LocalDate.now().toString(), Duration.ofMinutes(30));
+        if (shard == null) {
+            return;
+        }
+        log.info("定时处理派送中订单，分片{}/{}：{}", shard.getIndex(), shard.getTotal(), LocalDateTime.now());
 
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().minusHours(1));
-        if (ordersList != null && !ordersList.isEmpty()) {
-            for (Orders order : ordersList) {
-                order.setStatus(Orders.COMPLETED);
-                orderMapper.update(order);
+        int completed = updateStatusInBatches(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED,
+                LocalDateTime.now().minusHours(1), null, shard, null, null);
+        if (completed > 0) {
+            // 批量更新后以数据库为准重算计数器
+            orderCounterService.reconcile();
+        }
+        log.info("定时处理派送中订单结束，完成{}个订单：{}", completed, LocalDateTime.now());
+    }
+
+    /**
+     * 以数据库为准对账订单状态计数器，每5分钟执行一次，集群中只有获取到租约的节点执行
+     */
+    @Scheduled(cron = "0 0/5 * * * ?")
+    public void reconcileOrderCounter() {
+        jobLeaseManager.runWithLease("order-counter-reconcile", Duration.ofMinutes(1), lease -> {
+            log.info("定时对账订单状态计数器：{}", LocalDateTime.now());
+            orderCounterService.reconcile();
+        });
+    }
+
+    /**
+     * 分批执行 update orders set status = toStatus where status = fromStatus and order_time < orderTime limit n，
+     * 每批单独提交，直到受影响行数小于批大小；完成后标记涉及日期的每日营业数据汇总需要对账
+     *
+     * @param fromStatus
+     * @param toStatus
+     * @param orderTime
+     * @param cancelReason 取消订单时的取消原因，其他状态流转传null
+     * @param shard        只处理当前分片的订单
+     * @param lease        任务租约，不为空时每批更新前续期，并通过fencing token写入，租约丢失或token过期时停止；
+     *                     为空时（分片任务）各批直接写入
+     * @param ttl          续期的租约有效期
+     * @return 受影响的总行数
+     */
+    private int updateStatusInBatches(Integer fromStatus, Integer toStatus, LocalDateTime orderTime, String cancelReason,
+                                      JobShard shard, JobLease lease, Duration ttl) {
+        LocalDateTime minOrderTime = orderMapper.getMinOrderTimeByStatusAndOrderTimeLT(fromStatus, orderTime);
+        if (minOrderTime == null) {
+            return 0;
+        }
+
+        int total = 0;
+        int rows;
+        do {
+            IntSupplier batch = () -> orderMapper.updateStatusBatch(fromStatus, toStatus, orderTime, cancelReason,
+                    shard.getIndex(), shard.getTotal(), batchSize);
+            Integer batchRows;
+            if (lease == null) {
+                batchRows = batch.getAsInt();
+            } else {
+                batchRows = jobLeaseManager.renew(lease, ttl) ? jobLeaseManager.writeFenced(lease, batch) : null;
+            }
+            if (batchRows == null) {
+                log.warn("批量更新订单状态 {} -> {} 中止，累计{}行", fromStatus, toStatus, total);
+                break;
             }
+            rows = batchRows;
+            total += rows;
+            log.info("批量更新订单状态 {} -> {}，本批{}行，累计{}行", fromStatus, toStatus, rows, total);
+        } while (rows >= batchSize);
+
+        // 批量更新无法逐单累加汇总数据，标记从最早的下单日期开始重新对账
+        if (total > 0) {
+            businessRollupService.markDirty(minOrderTime.toLocalDate());
         }
-        log.info("定时处理派送中订单结束：{}", LocalDateTime.now());
+        return total;
     }
 }
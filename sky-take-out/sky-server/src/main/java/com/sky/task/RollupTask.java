@@ -0,0 +1,61 @@
+package com.sky.task;
+
+import com.sky.lease.JobLeaseManager;
+import com.sky.service.BusinessRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * ClassName: RollupTask
+ * Package: com.sky.task
+ * Description: 定时任务，每晚根据订单表和用户表对账每日营业数据汇总
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@Slf4j
+public class RollupTask {
+    @Autowired
+    private BusinessRollupService businessRollupService;
+    @Autowired
+    private JobLeaseManager jobLeaseManager;
+
+    // 每晚对账最近多少天的数据（包含今天），覆盖订单跨天完成、取消等情况
+    @Value("${sky.rollup.reconcile-days:3}")
+    private int reconcileDays;
+
+    /**
+     * 每天凌晨2点执行一次，在OrderTask处理完派送中订单之后
+     * 集群中只有获取到租约的节点执行；批量状态流转标记过更早的日期时，从该日期开始对账
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void reconcile() {
+        jobLeaseManager.runWithLease("rollup-reconcile", Duration.ofMinutes(30), lease -> {
+            log.info("定时对账每日营业数据汇总：{}", LocalDateTime.now());
+            LocalDate end = LocalDate.now();
+            LocalDate begin = end.minusDays(Math.max(reconcileDays, 1) - 1);
+            LocalDate dirtyFrom = businessRollupService.pollDirtyFrom();
+            if (dirtyFrom != null && dirtyFrom.isBefore(begin)) {
+                begin = dirtyFrom;
+            }
+            try {
+                businessRollupService.reconcile(begin, end);
+            } catch (RuntimeException e) {
+                // 对账失败时保留标记，下次继续对账
+                if (dirtyFrom != null) {
+                    businessRollupService.markDirty(dirtyFrom);
+                }
+                throw e;
+            }
+            log.info("定时对账每日营业数据汇总结束：{}", LocalDateTime.now());
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.sky.websocket;
+
+import javax.websocket.HandshakeResponse;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: WebSocketAuthConfigurator
+ * Package: com.sky.websocket
+ * Description: WebSocket握手配置，从握手请求中取出管理端令牌放入会话属性，由WebSocketServer在建立连接时校验
+ * 依次读取请求头token、查询参数token、Cookie中的token（管理端前端登录后令牌保存在该Cookie中，同源握手时浏览器会自动携带）
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+public class WebSocketAuthConfigurator extends ServerEndpointConfig.Configurator {
+
+    // 会话属性中保存令牌的key
+    public static final String TOKEN_PROPERTY = "sky.websocket.token";
+
+    private static final String TOKEN_NAME = "token";
+
+    @Override
+    public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+        String token = first(request.getHeaders(), TOKEN_NAME);
+        if (token == null) {
+            token = first(request.getParameterMap(), TOKEN_NAME);
+        }
+        if (token == null) {
+            token = cookie(request.getHeaders(), TOKEN_NAME);
+        }
+        if (token != null) {
+            sec.getUserProperties().put(TOKEN_PROPERTY, token);
+        }
+    }
+
+    private static String first(Map<String, List<String>> values, String name) {
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                String value = entry.getValue().get(0);
+                return value == null || value.isEmpty() ? null : value;
+            }
+        }
+        return null;
+    }
+
+    private static String cookie(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (!"cookie".equalsIgnoreCase(entry.getKey()) || entry.getValue() == null) {
+                continue;
+            }
+            for (String header : entry.getValue()) {
+                for (String pair : header.split(";")) {
+                    int index = pair.indexOf('=');
+                    if (index > 0 && name.equals(pair.substring(0, index).trim())) {
+                        String value = pair.substring(index + 1).trim();
+                        return value.isEmpty() ? null : value;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.sky.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ClassName: WebSocketEnvelope
+ * Package: com.sky.websocket
+ * Description: 在节点间传递的WebSocket消息，带有路由信息，只投递给订阅了该店铺、该角色的会话
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebSocketEnvelope {
+
+    private String shopId;
+
+    private String role;
+
+    // 发送给客户端的消息内容
+    private String message;
+}
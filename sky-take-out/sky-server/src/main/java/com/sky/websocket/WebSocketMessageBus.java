@@ -0,0 +1,117 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * ClassName: WebSocketMessageBus
+ * Package: com.sky.websocket
+ * Description: 跨节点的WebSocket消息总线
+ * 业务代码只发布一次消息，通过Redis发布订阅广播到所有节点，每个节点（包括发布者自己）再按（店铺，角色）投递给本节点上订阅的会话
+ * 发布线程每次取出队列中积压的全部消息（最多MAX_BATCH_SIZE条）合并为一个JSON数组发布，突发时减少Redis往返，空闲时不增加延迟
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Component
+@Slf4j
+public class WebSocketMessageBus implements MessageListener {
+
+    private static final int MAX_BATCH_SIZE = 100;
+
+    // 待发布消息的最大积压数，超过后直接丢弃，避免Redis不可用时占满内存
+    private static final int MAX_PENDING = 10000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Value("${sky.websocket.topic:sky:ws:broadcast}")
+    private String topic;
+
+    private final BlockingQueue<WebSocketEnvelope> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+
+    private Thread publisher;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(topic));
+        publisher = new Thread(this::publishLoop, "websocket-bus-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        publisher.interrupt();
+    }
+
+    /**
+     * 向所有节点上订阅了指定店铺、指定角色的客户端发送消息，立即返回
+     *
+     * @param shopId
+     * @param role
+     * @param message
+     */
+    public void publish(String shopId, String role, String message) {
+        if (!pending.offer(new WebSocketEnvelope(shopId, role, message))) {
+            log.warn("WebSocket消息积压过多，丢弃消息：{}", message);
+        }
+    }
+
+    /**
+     * 收到其他节点（或本节点）发布的一批消息，发送给本节点上的会话
+     *
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        List<WebSocketEnvelope> envelopes = JSON.parseArray(new String(message.getBody(), StandardCharsets.UTF_8), WebSocketEnvelope.class);
+        envelopes.forEach(this::deliver);
+    }
+
+    private void publishLoop() {
+        List<WebSocketEnvelope> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pending.drainTo(batch, MAX_BATCH_SIZE - 1);
+            try {
+                stringRedisTemplate.convertAndSend(topic, JSON.toJSONString(batch));
+            } catch (Exception e) {
+                // Redis不可用时至少保证本节点的客户端能收到
+                log.error("发布WebSocket消息失败，只发送给本节点的客户端", e);
+                batch.forEach(this::deliver);
+            }
+            batch.clear();
+        }
+    }
+
+    private void deliver(WebSocketEnvelope envelope) {
+        webSocketServer.sendToSubscribers(envelope.getShopId(), envelope.getRole(), envelope.getMessage());
+    }
+}
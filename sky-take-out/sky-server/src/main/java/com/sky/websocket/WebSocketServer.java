@@ -1,34 +1,124 @@
 package com.sky.websocket;
 
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WebSocket服务
+ * 会话建立时按（店铺，角色）登记订阅，消息只投递给对应订阅下的会话，发送开销与订阅者数量成正比，而不是与总连接数成正比
+ * 发送消息只是放入各会话的发送队列，由共享线程池异步发送
+ * 连接地址：/ws/{sid}，管理端令牌由WebSocketAuthConfigurator从握手请求的请求头、查询参数token或Cookie中取出
+ * 店铺和角色只从校验通过的令牌中获取，不接受客户端传入，令牌无效时直接关闭连接
+ * 过渡期：现有管理端前端建立连接时不携带令牌（令牌Cookie不一定能随握手发送到WebSocket地址），
+ * sky.websocket.allow-anonymous=true（默认）时未携带令牌的连接仍按默认店铺的管理端角色订阅并记录告警；
+ * 前端在连接地址后追加 ?token=管理端令牌 之后，应将其设为false，未携带令牌的连接也直接关闭
  */
 @Component
-@ServerEndpoint("/ws/{sid}")
+@ServerEndpoint(value = "/ws/{sid}", configurator = WebSocketAuthConfigurator.class)
+@Slf4j
 public class WebSocketServer {
 
+    // 管理端（商家）角色，接收来单提醒和客户催单
+    public static final String ROLE_ADMIN = "admin";
+
+    // 每个会话最多积压的消息数，超过后视为慢客户端并断开
+    private static final int SESSION_QUEUE_CAPACITY = 64;
+
+    // 阻塞发送的超时时间，避免单个客户端长期占用发送线程，单位毫秒
+    private static final long SEND_TIMEOUT_MILLIS = 5000;
+
+    private static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final Map<String, WebSocketSessionSender> sessionMap = new ConcurrentHashMap<>();
+
+    // 订阅索引，key为 店铺id:角色
+    private static final Map<String, Set<WebSocketSessionSender>> subscriptionMap = new ConcurrentHashMap<>();
+
+    // 发送线程池，同一会话同一时刻最多占用一个线程，任务数不会超过会话数
+    private static final ExecutorService sendExecutor = createSendExecutor();
+
+    // 令牌中没有店铺声明时（升级前签发的令牌）使用的店铺id，端点实例由容器按连接创建，无法注入，因此使用静态字段
+    private static volatile String defaultShopId = "1";
+
+    private static volatile JwtProperties jwtProperties;
+
+    // 是否允许未携带令牌的连接（过渡期兼容未升级的管理端前端）
+    private static volatile boolean allowAnonymous = true;
+
+    @Value("${sky.shop.id:1}")
+    public void setDefaultShopId(String shopId) {
+        WebSocketServer.defaultShopId = shopId;
+    }
+
+    @Value("${sky.websocket.allow-anonymous:true}")
+    public void setAllowAnonymous(boolean allowAnonymous) {
+        WebSocketServer.allowAnonymous = allowAnonymous;
+    }
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        WebSocketServer.jwtProperties = jwtProperties;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
-    public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+    public void onOpen(Session session, @PathParam("sid") String sid) throws IOException {
+        //校验管理端令牌，订阅的店铺和角色由令牌决定
+        String token = (String) session.getUserProperties().get(WebSocketAuthConfigurator.TOKEN_PROPERTY);
+        String shopId;
+        if (token == null && allowAnonymous) {
+            //过渡期兼容未携带令牌的管理端前端，按默认店铺订阅
+            log.warn("客户端：{}未携带令牌，按默认店铺：{}建立连接，前端升级后请关闭sky.websocket.allow-anonymous", sid, defaultShopId);
+            shopId = defaultShopId;
+        } else {
+            Claims claims = parseAdminToken(token);
+            if (claims == null) {
+                log.warn("客户端：{}未携带有效令牌，拒绝连接", sid);
+                session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "unauthorized"));
+                return;
+            }
+            Object shopClaim = claims.get(JwtClaimsConstant.SHOP_ID);
+            shopId = shopClaim != null ? shopClaim.toString() : defaultShopId;
+        }
+        String role = ROLE_ADMIN;
+        log.info("客户端：{}建立连接，店铺：{}，角色：{}", sid, shopId, role);
+
+        session.getUserProperties().put(BLOCKING_SEND_TIMEOUT_PROPERTY, SEND_TIMEOUT_MILLIS);
+        WebSocketSessionSender sender = new WebSocketSessionSender(sid, session, sendExecutor, SESSION_QUEUE_CAPACITY,
+                subscriptionKey(shopId, role));
+        WebSocketSessionSender previous = sessionMap.put(sid, sender);
+        if (previous != null) {
+            unsubscribe(previous);
+        }
+        subscriptionMap.computeIfAbsent(sender.getSubscriptionKey(), key -> ConcurrentHashMap.newKeySet()).add(sender);
     }
 
     /**
@@ -38,35 +128,80 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
     }
 
     /**
      * 连接关闭调用的方法
      *
+     * @param session
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        WebSocketSessionSender sender = sessionMap.get(sid);
+        // 同一sid重连时，只移除属于当前会话的发送器
+        if (sender != null && sender.getSession() == session && sessionMap.remove(sid, sender)) {
+            unsubscribe(sender);
+        }
     }
 
     /**
-     * 群发
+     * 发送给订阅了指定店铺、指定角色的会话，只是放入各会话的发送队列，不会等待网络发送
      *
+     * @param shopId
+     * @param role
      * @param message
      */
-    public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public void sendToSubscribers(String shopId, String role, String message) {
+        Set<WebSocketSessionSender> senders = subscriptionMap.getOrDefault(subscriptionKey(shopId, role), Collections.emptySet());
+        for (WebSocketSessionSender sender : senders) {
+            sender.send(message);
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        sendExecutor.shutdown();
+    }
+
+    private void unsubscribe(WebSocketSessionSender sender) {
+        subscriptionMap.computeIfPresent(sender.getSubscriptionKey(), (key, senders) -> {
+            senders.remove(sender);
+            return senders.isEmpty() ? null : senders;
+        });
+    }
+
+    private static String subscriptionKey(String shopId, String role) {
+        return shopId + ":" + role;
+    }
+
+    /**
+     * 校验管理端令牌，与JwtTokenAdminInterceptor使用同一秘钥
+     *
+     * @param token
+     * @return 校验失败时返回null
+     */
+    private static Claims parseAdminToken(String token) {
+        if (token == null || jwtProperties == null) {
+            return null;
+        }
+        try {
+            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+            return claims.get(JwtClaimsConstant.EMP_ID) != null ? claims : null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createSendExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "websocket-send-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
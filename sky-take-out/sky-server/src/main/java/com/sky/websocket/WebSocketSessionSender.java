@@ -0,0 +1,132 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ClassName: WebSocketSessionSender
+ * Package: com.sky.websocket
+ * Description: 单个WebSocket会话的异步发送器
+ * 消息先放入该会话自己的有界队列，由共享线程池串行发送（同一会话同一时刻最多一个发送任务），调用方不会被慢客户端阻塞
+ * 队列已满说明客户端消费过慢，在线程池中关闭该会话，客户端重连后重新接收
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@Slf4j
+public class WebSocketSessionSender {
+
+    private final String sid;
+    private final Session session;
+    // 订阅的店铺和角色，key为 店铺id:角色
+    private final String subscriptionKey;
+    private final Executor executor;
+    private final BlockingQueue<String> queue;
+    // 是否已有发送任务在执行
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // 是否已因消费过慢而关闭，关闭只提交一次
+    private final AtomicBoolean closing = new AtomicBoolean(false);
+
+    public WebSocketSessionSender(String sid, Session session, Executor executor, int queueCapacity, String subscriptionKey) {
+        this.sid = sid;
+        this.session = session;
+        this.subscriptionKey = subscriptionKey;
+        this.executor = executor;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public String getSubscriptionKey() {
+        return subscriptionKey;
+    }
+
+    /**
+     * 消息入队，立即返回
+     *
+     * @param message
+     * @return 队列已满或会话已关闭时返回false
+     */
+    public boolean send(String message) {
+        if (closing.get() || !session.isOpen()) {
+            return false;
+        }
+        if (!queue.offer(message)) {
+            log.warn("客户端{}消费过慢，发送队列已满，关闭连接", sid);
+            scheduleClose();
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (Exception e) {
+                draining.set(false);
+                log.error("提交WebSocket发送任务失败：{}", sid, e);
+            }
+        }
+    }
+
+    /**
+     * 在线程池中把队列中的消息依次发送出去
+     */
+    private void drain() {
+        try {
+            String message;
+            while ((message = queue.poll()) != null) {
+                if (!session.isOpen()) {
+                    queue.clear();
+                    return;
+                }
+                try {
+                    session.getBasicRemote().sendText(message);
+                } catch (Exception e) {
+                    log.error("向客户端{}发送消息失败，关闭连接", sid, e);
+                    queue.clear();
+                    close();
+                    return;
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记后可能有新消息入队，需要重新调度
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * 在线程池中关闭会话：关闭时要向客户端写关闭帧，可能阻塞在同一个慢连接上，不能占用调用方（下单、催单等请求）的线程
+     */
+    private void scheduleClose() {
+        if (closing.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::close);
+            } catch (Exception e) {
+                log.error("提交关闭客户端{}连接的任务失败", sid, e);
+            }
+        }
+    }
+
+    private void close() {
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+        } catch (IOException e) {
+            log.error("关闭客户端{}连接失败", sid, e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+-- 每日营业数据汇总表，由订单状态变化、用户注册增量维护，并由RollupTask每晚对账
+create table if not exists sky_take_out.business_daily_rollup
+(
+    date                  date                     not null comment '日期'
+        primary key,
+    turnover              decimal(12, 2) default 0 not null comment '营业额（已完成订单金额）',
+    order_count           int            default 0 not null comment '订单总数',
+    valid_order_count     int            default 0 not null comment '有效订单数（已完成）',
+    cancelled_order_count int            default 0 not null comment '已取消订单数',
+    new_user_count        int            default 0 not null comment '新增用户数',
+    update_time           datetime                 null comment '更新时间'
+) comment '每日营业数据汇总';
+
+-- 每日菜品/套餐销量汇总表（只统计已完成订单）
+create table if not exists sky_take_out.dish_daily_sales
+(
+    date   date         not null comment '日期',
+    name   varchar(32)  not null comment '菜品/套餐名称',
+    number int default 0 not null comment '销量',
+    primary key (date, name)
+) comment '每日菜品销量汇总';
+
+-- 一次性回填历史数据：建表后、切换到读取汇总表的版本上线前执行一次
+-- 上线前后几天内的订单由RollupTask每晚对账最近几天（sky.rollup.reconcile-days）覆盖修正
+-- 1. 按下单日期回填订单总数、有效订单数、已取消订单数和营业额
+insert into sky_take_out.business_daily_rollup
+    (date, turnover, order_count, valid_order_count, cancelled_order_count, update_time)
+select DATE(order_time),
+       sum(if(status = 5, amount, 0)),
+       count(id),
+       sum(if(status = 5, 1, 0)),
+       sum(if(status = 6, 1, 0)),
+       now()
+from sky_take_out.orders
+group by DATE(order_time)
+on duplicate key update turnover              = values(turnover),
+                        order_count           = values(order_count),
+                        valid_order_count     = values(valid_order_count),
+                        cancelled_order_count = values(cancelled_order_count),
+                        update_time           = values(update_time);
+
+-- 2. 按注册日期回填新增用户数
+insert into sky_take_out.business_daily_rollup (date, new_user_count, update_time)
+select DATE(create_time), count(id), now()
+from sky_take_out.user
+where create_time is not null
+group by DATE(create_time)
+on duplicate key update new_user_count = values(new_user_count),
+                        update_time    = values(update_time);
+
+-- 3. 按下单日期回填已完成订单的菜品销量
+delete from sky_take_out.dish_daily_sales;
+
+insert into sky_take_out.dish_daily_sales (date, name, number)
+select DATE(o.order_time), od.name, sum(od.number)
+from sky_take_out.order_detail od, sky_take_out.orders o
+where od.order_id = o.id and o.status = 5
+group by DATE(o.order_time), od.name;
@@ -0,0 +1,14 @@
+-- 菜品、套餐的打包费：每份默认1元，与用户端按份数计算打包费的规则一致，可按菜品/套餐单独调整
+-- 下单时服务端按价格快照中的打包费计算订单打包费，与用户端提交的打包费、总金额不一致时拒绝下单
+alter table sky_take_out.dish
+    add pack_amount decimal(10, 2) default 1.00 not null comment '打包费（每份）';
+
+alter table sky_take_out.setmeal
+    add pack_amount decimal(10, 2) default 1.00 not null comment '打包费（每份）';
+
+-- 订单打包费改为金额类型，与订单金额一致
+alter table sky_take_out.orders
+    modify pack_amount decimal(10, 2) null comment '打包费';
+
+-- 执行后清除价格快照缓存，使下单读取到带打包费的快照：
+--   redis-cli del priceSnapshotCache::dish priceSnapshotCache::setmeal
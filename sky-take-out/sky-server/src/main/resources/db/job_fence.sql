@@ -0,0 +1,9 @@
+-- 定时任务的fencing token表：每次获取任务租约时从Redis的 job:fence:{jobName} 自增得到一个更大的token
+-- 受租约保护的写入在同一事务中先锁定该任务的行并比较token，较小的token（已失去租约的旧持有者）写入被拒绝
+create table if not exists sky_take_out.job_fence
+(
+    job_name    varchar(64)      not null comment '任务名称'
+        primary key,
+    token       bigint default 0 not null comment '已写入过的最大token',
+    update_time datetime         null comment '更新时间'
+) comment '定时任务fencing token';
@@ -0,0 +1,11 @@
+-- 订单号唯一索引：订单号由雪花算法生成，不再重复，getByNumber/getByNumberAndUserId 按唯一索引定位到一行
+-- 执行前先检查是否存在旧的重复订单号（使用时间戳作为订单号时并发下单会重复）
+select number, count(*) from sky_take_out.orders group by number having count(*) > 1;
+
+-- 如有重复，为id较大的订单号追加id后缀
+update sky_take_out.orders o
+    join sky_take_out.orders k on o.number = k.number and o.id > k.id
+set o.number = concat(o.number, '-', o.id);
+
+alter table sky_take_out.orders
+    add unique index uk_number (number);
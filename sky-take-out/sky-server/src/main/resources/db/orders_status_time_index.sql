@@ -0,0 +1,6 @@
+-- 订单状态+下单时间联合索引：
+-- 批量状态流转 update orders set status = ? where status = ? and order_time < ? limit n 以及
+-- 查询最早下单时间 select min(order_time) from orders where status = ? and order_time < ? 都走该索引，
+-- 每批只扫描、锁定满足条件的前n行，而不是扫描全表并锁住大量无关行
+alter table sky_take_out.orders
+    add index idx_status_order_time (status, order_time);
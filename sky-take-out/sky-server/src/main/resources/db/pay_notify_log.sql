@@ -0,0 +1,16 @@
+-- 支付回调记录表：微信支付交易号唯一，同一笔支付的重复回调（微信会多次重试）插入失败后直接跳过
+-- status=2 表示已收款但订单不是待支付状态，需要退款或人工处理：
+--   select * from sky_take_out.pay_notify_log where status = 2;
+create table if not exists sky_take_out.pay_notify_log
+(
+    id             bigint auto_increment comment '主键'
+        primary key,
+    transaction_id varchar(64)       not null comment '微信支付交易号',
+    out_trade_no   varchar(64)       not null comment '商户订单号',
+    status         tinyint default 1 not null comment '处理结果 1已支付订单 2订单不是待支付，需要退款或人工处理',
+    create_time    datetime          not null comment '回调处理时间',
+    constraint uk_transaction_id
+        unique (transaction_id)
+) comment '支付回调记录';
+
+create index idx_status on sky_take_out.pay_notify_log (status);
@@ -0,0 +1,23 @@
+-- 购物车唯一键：同一用户的同一菜品（含口味）或套餐只保留一行，配合 insert ... on duplicate key update 原子累加数量
+-- 1. 合并已有的重复行（数量累加到id最小的一行）
+update sky_take_out.shopping_cart c
+    join (select min(id) as id, sum(number) as number
+          from sky_take_out.shopping_cart
+          group by user_id, dish_id, setmeal_id, dish_flavor
+          having count(*) > 1) d on c.id = d.id
+set c.number = d.number;
+
+delete c
+from sky_take_out.shopping_cart c
+         join sky_take_out.shopping_cart k
+              on c.user_id = k.user_id
+                  and c.dish_id <=> k.dish_id
+                  and c.setmeal_id <=> k.setmeal_id
+                  and c.dish_flavor <=> k.dish_flavor
+                  and c.id > k.id;
+
+-- 2. dish_id/setmeal_id/dish_flavor可能为null，唯一索引不会把null视为相等，因此使用生成列作为商品标识
+alter table sky_take_out.shopping_cart
+    add column item_key varchar(128) generated always as
+        (concat(ifnull(dish_id, ''), ':', ifnull(setmeal_id, ''), ':', ifnull(dish_flavor, ''))) stored comment '商品标识',
+    add unique index uk_user_item (user_id, item_key);
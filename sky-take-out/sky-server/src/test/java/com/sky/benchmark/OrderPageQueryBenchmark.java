@@ -0,0 +1,170 @@
+package com.sky.benchmark;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.result.PageResult;
+import com.sky.service.impl.OrderServiceImpl;
+import com.sky.vo.OrderVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: OrderPageQueryBenchmark
+ * Package: com.sky.benchmark
+ * Description: 订单分页查询每页的数据库往返次数与耗时
+ * batched：当前实现，一页订单的明细用一条 in (...) 语句查询，每页2次往返
+ * perOrder：改造前的做法，每个订单单独查询一次明细，每页1 + pageSize次往返
+ * 数据库以固定往返延迟的桩代替，结束时打印每页的平均往返次数
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderPageQueryBenchmark {
+
+    // 模拟的单次数据库往返耗时（同机房MySQL）
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int DETAILS_PER_ORDER = 3;
+
+    @Param({"10", "20", "50"})
+    private int pageSize;
+
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+
+    private OrderServiceImpl orderService;
+    private OrderMapper orderMapper;
+    private OrderDetailMapper orderDetailMapper;
+    private OrdersPageQueryDTO queryDTO;
+
+    @Setup
+    public void setup() {
+        List<Orders> orders = new ArrayList<>();
+        List<OrderDetail> details = new ArrayList<>();
+        for (long id = 1; id <= pageSize; id++) {
+            orders.add(Orders.builder().id(id).number("17947120819244810" + id).status(Orders.COMPLETED)
+                    .amount(new BigDecimal("58.00")).build());
+            for (int i = 0; i < DETAILS_PER_ORDER; i++) {
+                details.add(OrderDetail.builder().orderId(id).name("菜品" + i).number(1)
+                        .amount(new BigDecimal("18.00")).build());
+            }
+        }
+
+        orderMapper = mock(OrderMapper.class, withSettings().stubOnly());
+        when(orderMapper.pageQuery(any())).thenAnswer(invocation -> {
+            roundTrip();
+            Page<Orders> page = new Page<>(1, pageSize);
+            page.addAll(orders);
+            page.setTotal(1000);
+            return page;
+        });
+        orderDetailMapper = mock(OrderDetailMapper.class, withSettings().stubOnly());
+        when(orderDetailMapper.getByOrderIds(anyList())).thenAnswer(invocation -> {
+            roundTrip();
+            return details;
+        });
+        when(orderDetailMapper.getByOrderId(anyLong())).thenAnswer(invocation -> {
+            roundTrip();
+            Long orderId = invocation.getArgument(0);
+            List<OrderDetail> result = new ArrayList<>(DETAILS_PER_ORDER);
+            for (OrderDetail detail : details) {
+                if (detail.getOrderId().equals(orderId)) {
+                    result.add(detail);
+                }
+            }
+            return result;
+        });
+
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderService, "orderDetailMapper", orderDetailMapper);
+
+        queryDTO = new OrdersPageQueryDTO();
+        queryDTO.setPage(1);
+        queryDTO.setPageSize(pageSize);
+        BaseContext.setCurrentId(1L);
+    }
+
+    @Benchmark
+    public PageResult batched() {
+        pages.incrementAndGet();
+        try {
+            return orderService.historyOrders(queryDTO);
+        } finally {
+            // 桩mapper不会消费分页参数，手动清理
+            PageHelper.clearPage();
+        }
+    }
+
+    @Benchmark
+    public PageResult perOrder() {
+        pages.incrementAndGet();
+        Page<Orders> page = orderMapper.pageQuery(queryDTO);
+        List<OrderVO> list = new ArrayList<>();
+        for (Orders orders : page) {
+            OrderVO orderVO = new OrderVO();
+            BeanUtils.copyProperties(orders, orderVO);
+            orderVO.setOrderDetailList(orderDetailMapper.getByOrderId(orders.getId()));
+            list.add(orderVO);
+        }
+        return new PageResult(page.getTotal(), list);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n每页订单数=%d，每页数据库往返次数=%.1f%n", pageSize, (double) roundTrips.get() / pages.get());
+    }
+
+    private void roundTrip() {
+        roundTrips.incrementAndGet();
+        LockSupport.parkNanos(ROUND_TRIP_NANOS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(OrderPageQueryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,178 @@
+package com.sky.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.PayNotifyStatusConstant;
+import com.sky.controller.notify.PayNotifyController;
+import com.sky.properties.WeChatProperties;
+import com.sky.service.OrderService;
+import com.sky.service.PayNotifyIdempotencyService;
+import com.sky.utils.AesGcmDecryptUtil;
+import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: PayNotifyBenchmark
+ * Package: com.sky.benchmark
+ * Description: 支付回调处理的单线程吞吐量（每核每秒可处理的通知数）
+ * notifyController：完整的回调处理路径（读取报文、解析、解密、业务处理桩、应答）
+ * legacyDecryptAndParse：改造前的做法，逐行读取、两次解析为JSONObject、每次new AesUtil，用于对比
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PayNotifyBenchmark {
+
+    private static final String API_V3_KEY = "0123456789abcdef0123456789abcdef";
+
+    private PayNotifyController payNotifyController;
+    private byte[] body;
+    private String bodyText;
+
+    @Setup
+    public void setup() throws Exception {
+        WeChatProperties weChatProperties = new WeChatProperties();
+        weChatProperties.setApiV3Key(API_V3_KEY);
+        AesGcmDecryptUtil aesGcmDecryptUtil = new AesGcmDecryptUtil();
+        ReflectionTestUtils.setField(aesGcmDecryptUtil, "weChatProperties", weChatProperties);
+
+        OrderService orderService = mock(OrderService.class, withSettings().stubOnly());
+        when(orderService.paySuccess(any(), any())).thenReturn(PayNotifyStatusConstant.APPLIED);
+
+        payNotifyController = new PayNotifyController();
+        ReflectionTestUtils.setField(payNotifyController, "orderService", orderService);
+        ReflectionTestUtils.setField(payNotifyController, "aesGcmDecryptUtil", aesGcmDecryptUtil);
+        ReflectionTestUtils.setField(payNotifyController, "payNotifyIdempotencyService", new AlwaysNewNotifyService());
+
+        bodyText = buildNotification();
+        body = bodyText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse notifyController() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/notify/paySuccess");
+        request.setContent(body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        payNotifyController.paySuccessNotify(request, response);
+        return response;
+    }
+
+    @Benchmark
+    public String legacyDecryptAndParse() throws Exception {
+        BufferedReader reader = new BufferedReader(new StringReader(bodyText));
+        StringBuilder result = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (result.length() > 0) {
+                result.append("\n");
+            }
+            result.append(line);
+        }
+        JSONObject resource = JSON.parseObject(result.toString()).getJSONObject("resource");
+        AesUtil aesUtil = new AesUtil(API_V3_KEY.getBytes(StandardCharsets.UTF_8));
+        String plainText = aesUtil.decryptToString(resource.getString("associated_data").getBytes(StandardCharsets.UTF_8),
+                resource.getString("nonce").getBytes(StandardCharsets.UTF_8),
+                resource.getString("ciphertext"));
+        return JSON.parseObject(plainText).getString("out_trade_no");
+    }
+
+    /**
+     * 构造一条与微信支付格式一致的加密通知
+     */
+    private static String buildNotification() throws Exception {
+        Map<String, Object> transaction = new HashMap<>();
+        transaction.put("out_trade_no", "1794712081924481024");
+        transaction.put("transaction_id", "4200002245202405261234567890");
+        transaction.put("trade_state", "SUCCESS");
+        transaction.put("mchid", "1900000001");
+        transaction.put("appid", "wx0000000000000000");
+        byte[] plainText = JSON.toJSONString(transaction).getBytes(StandardCharsets.UTF_8);
+
+        String nonce = "fdasflkja484";
+        String associatedData = "transaction";
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(API_V3_KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, nonce.getBytes(StandardCharsets.UTF_8)));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        String ciphertext = Base64.getEncoder().encodeToString(cipher.doFinal(plainText));
+
+        Map<String, Object> resource = new HashMap<>();
+        resource.put("algorithm", "AEAD_AES_256_GCM");
+        resource.put("ciphertext", ciphertext);
+        resource.put("associated_data", associatedData);
+        resource.put("nonce", nonce);
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("id", "EV-2018022511223320873");
+        notification.put("event_type", "TRANSACTION.SUCCESS");
+        notification.put("resource_type", "encrypt-resource");
+        notification.put("resource", resource);
+        return JSON.toJSONString(notification);
+    }
+
+    /**
+     * 去重存储的桩：每条通知都当作首次处理，只测量回调本身的开销
+     */
+    private static class AlwaysNewNotifyService implements PayNotifyIdempotencyService {
+        @Override
+        public boolean tryBegin(String notifyId) {
+            return true;
+        }
+
+        @Override
+        public boolean isProcessed(String notifyId) {
+            return false;
+        }
+
+        @Override
+        public void markProcessed(String notifyId) {
+        }
+
+        @Override
+        public void release(String notifyId) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PayNotifyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
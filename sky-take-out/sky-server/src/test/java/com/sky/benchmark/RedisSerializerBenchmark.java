@@ -0,0 +1,109 @@
+package com.sky.benchmark;
+
+import com.sky.cache.VersionedJacksonRedisSerializer;
+import com.sky.entity.DishFlavor;
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassName: RedisSerializerBenchmark
+ * Package: com.sky.benchmark
+ * Description: 缓存value序列化耗时，对比带版本号的Jackson序列化器与原来的JDK序列化
+ * 数据为一个分类下的20道菜品（每道菜2个口味），与按分类查询菜品的缓存内容一致
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RedisSerializerBenchmark {
+
+    private final VersionedJacksonRedisSerializer jacksonSerializer = new VersionedJacksonRedisSerializer();
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    private List<DishVO> dishes;
+    private byte[] jacksonBytes;
+    private byte[] jdkBytes;
+
+    @Setup
+    public void setup() {
+        dishes = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            List<DishFlavor> flavors = new ArrayList<>();
+            flavors.add(flavor(i, "辣度", "[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]"));
+            flavors.add(flavor(i, "忌口", "[\"不要葱\",\"不要蒜\",\"不要香菜\"]"));
+            DishVO dish = new DishVO();
+            dish.setId(i);
+            dish.setName("菜品" + i);
+            dish.setCategoryId(11L);
+            dish.setPrice(new BigDecimal("28.00"));
+            dish.setImage("https://sky-take-out.oss-cn-beijing.aliyuncs.com/dish-" + i + ".png");
+            dish.setDescription("菜品描述" + i);
+            dish.setStatus(1);
+            dish.setUpdateTime(LocalDateTime.of(2024, 5, 1, 12, 30, 45));
+            dish.setFlavors(flavors);
+            dishes.add(dish);
+        }
+        jacksonBytes = jacksonSerializer.serialize(dishes);
+        jdkBytes = jdkSerializer.serialize(dishes);
+        System.out.printf("value大小：jackson=%d字节，jdk=%d字节%n", jacksonBytes.length, jdkBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jacksonSerialize() {
+        return jacksonSerializer.serialize(dishes);
+    }
+
+    @Benchmark
+    public Object jacksonDeserialize() {
+        return jacksonSerializer.deserialize(jacksonBytes);
+    }
+
+    @Benchmark
+    public byte[] jdkSerialize() {
+        return jdkSerializer.serialize(dishes);
+    }
+
+    @Benchmark
+    public Object jdkDeserialize() {
+        return jdkSerializer.deserialize(jdkBytes);
+    }
+
+    private static DishFlavor flavor(long dishId, String name, String value) {
+        DishFlavor flavor = new DishFlavor();
+        flavor.setDishId(dishId);
+        flavor.setName(name);
+        flavor.setValue(value);
+        return flavor;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RedisSerializerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
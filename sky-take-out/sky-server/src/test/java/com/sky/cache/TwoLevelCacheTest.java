@@ -0,0 +1,231 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ClassName: TwoLevelCacheTest
+ * Package: com.sky.cache
+ * Description: 二级缓存的Redis访问次数测试
+ * 以Map模拟Redis，统计每类命令的调用次数：读写L2不再额外查询版本号，清空缓存的开销与key的数量无关；
+ * get(key, valueLoader)按key加载，慢加载不阻塞其他key，加载不广播失效消息，只有put、evict、clear广播
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class TwoLevelCacheTest {
+
+    private static final String CACHE_NAME = "dishCache";
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> commands = new ConcurrentHashMap<>();
+    private final List<TwoLevelCache> nodes = new ArrayList<>();
+
+    private TwoLevelCache node1;
+    private TwoLevelCache node2;
+
+    @BeforeEach
+    void setUp() {
+        node1 = newNode("node-1");
+        node2 = newNode("node-2");
+    }
+
+    @Test
+    void readsVersionOnceInsteadOfOnEveryL2Access() {
+        for (int i = 0; i < 1000; i++) {
+            node1.put("dish_" + i, "value" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            // 另一个节点L1未命中，每次都访问L2
+            assertThat(node2.get("dish_" + i).get()).isEqualTo("value" + i);
+        }
+
+        // 每个节点只读取一次版本号
+        assertThat(count("GET " + CACHE_NAME + "::version")).isEqualTo(2);
+        assertThat(count("SET")).isEqualTo(1000);
+        assertThat(count("GET")).isEqualTo(1000);
+    }
+
+    @Test
+    void clearCostDoesNotGrowWithKeyCount() {
+        assertThat(clearCommands(10)).isEqualTo(clearCommands(10000));
+    }
+
+    @Test
+    void clearPropagatesNewVersionToOtherNodes() {
+        node1.put("dish_1", "old");
+        assertThat(node2.get("dish_1").get()).isEqualTo("old");
+
+        node1.clear();
+        commands.clear();
+
+        // 其他节点的本地缓存已清空，且直接使用新版本号访问L2，读不到旧版本的值
+        assertThat(node2.get("dish_1")).isNull();
+        assertThat(count("GET " + CACHE_NAME + "::version")).isZero();
+
+        node2.put("dish_1", "new");
+        assertThat(node1.get("dish_1").get()).isEqualTo("new");
+    }
+
+    @Test
+    void coldLoadsDoNotPublishInvalidations() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(node1.get("dish_" + i, () -> "value")).isEqualTo("value");
+        }
+        assertThat(count("PUBLISH")).isZero();
+
+        node1.evict("dish_1");
+        assertThat(count("PUBLISH")).isEqualTo(1);
+    }
+
+    @Test
+    void slowLoadDoesNotBlockOtherKeys() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> node1.get("slow", () -> {
+                loading.countDown();
+                release.await();
+                return "slowValue";
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // 另一个key的加载不需要等待正在加载的key
+            assertThat(node1.get("fast", () -> "fastValue")).isEqualTo("fastValue");
+
+            release.countDown();
+            assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("slowValue");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentLoadsOfSameKeyCallLoaderOnce() throws Exception {
+        int threads = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return node1.get("dish_1", () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(50);
+                        return "value";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+            assertThat(loads.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 写入指定数量的key后清空缓存，返回清空时的Redis命令数
+     */
+    private int clearCommands(int keys) {
+        for (int i = 0; i < keys; i++) {
+            node1.put("key_" + keys + "_" + i, i);
+        }
+        commands.clear();
+        node1.clear();
+        int total = commands.values().stream().mapToInt(AtomicInteger::get).sum();
+        assertThat(count("INCR")).isEqualTo(1);
+        assertThat(count("PUBLISH")).isEqualTo(1);
+        return total;
+    }
+
+    private int count(String command) {
+        AtomicInteger counter = commands.get(command);
+        return counter == null ? 0 : counter.get();
+    }
+
+    private void record(String command) {
+        commands.computeIfAbsent(command, c -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @SuppressWarnings("unchecked")
+    private TwoLevelCache newNode(String nodeId) {
+        ValueOperations<Object, Object> valueOperations = mock(ValueOperations.class);
+        doAnswer(invocation -> {
+            record("SET");
+            redis.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(valueOperations).set(any(), any(), any(Duration.class));
+        when(valueOperations.get(any())).thenAnswer(invocation -> {
+            record("GET");
+            return redis.get(invocation.<String>getArgument(0));
+        });
+        RedisTemplate redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        doAnswer(invocation -> {
+            record("PUBLISH");
+            CacheMessage message = JSON.parseObject(invocation.<String>getArgument(1), CacheMessage.class);
+            for (TwoLevelCache node : nodes) {
+                if (!nodeId(node).equals(message.getNodeId())) {
+                    node.evictLocal(message.getKey(), message.getVersion());
+                }
+            }
+            return null;
+        }).when(redisTemplate).convertAndSend(anyString(), any());
+
+        ValueOperations<String, String> stringOperations = mock(ValueOperations.class);
+        when(stringOperations.get(anyString())).thenAnswer(invocation -> {
+            record("GET " + invocation.getArgument(0));
+            return (String) redis.get(invocation.<String>getArgument(0));
+        });
+        when(stringOperations.increment(anyString())).thenAnswer(invocation -> {
+            record("INCR");
+            long next = Long.parseLong((String) redis.getOrDefault(invocation.<String>getArgument(0), "0")) + 1;
+            redis.put(invocation.getArgument(0), String.valueOf(next));
+            return next;
+        });
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(stringOperations);
+
+        TwoLevelCache cache = new TwoLevelCache(CACHE_NAME,
+                Caffeine.newBuilder().executor(Runnable::run).<String, Object>build(),
+                redisTemplate, stringRedisTemplate, Duration.ofMinutes(30), "cache:topic", nodeId);
+        nodes.add(cache);
+        return cache;
+    }
+
+    private static String nodeId(TwoLevelCache cache) {
+        return (String) ReflectionTestUtils.getField(cache, "nodeId");
+    }
+}
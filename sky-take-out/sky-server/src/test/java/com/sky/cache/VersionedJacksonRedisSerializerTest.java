@@ -0,0 +1,109 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.sky.entity.DishFlavor;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ClassName: VersionedJacksonRedisSerializerTest
+ * Package: com.sky.cache
+ * Description: Redis value序列化器测试，日期时间不丢失秒，升级前写入的版本1数据和JDK序列化数据仍可读取
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class VersionedJacksonRedisSerializerTest {
+
+    private final VersionedJacksonRedisSerializer serializer = new VersionedJacksonRedisSerializer();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void roundTripKeepsSecondsAndNanos() {
+        LocalDateTime updateTime = LocalDateTime.of(2024, 5, 1, 12, 30, 45, 123_000_000);
+        List<DishVO> dishes = new ArrayList<>();
+        dishes.add(dish(updateTime));
+
+        byte[] bytes = serializer.serialize(dishes);
+        assertThat(bytes[0]).isEqualTo(VersionedJacksonRedisSerializer.VERSION);
+
+        List<DishVO> restored = (List<DishVO>) serializer.deserialize(bytes);
+        assertThat(restored).hasSize(1);
+        assertThat(restored.get(0).getUpdateTime()).isEqualTo(updateTime);
+        assertThat(restored.get(0).getFlavors()).extracting(DishFlavor::getName).containsExactly("辣度");
+    }
+
+    @Test
+    void readsVersion1Payload() throws Exception {
+        ObjectMapper version1Mapper = new JacksonObjectMapper();
+        version1Mapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder().allowIfSubType("com.sky.")
+                .allowIfSubType("java.").build(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        byte[] json = version1Mapper.writeValueAsBytes(dish(LocalDateTime.of(2024, 5, 1, 12, 30)));
+        byte[] bytes = new byte[json.length + 1];
+        bytes[0] = 1;
+        System.arraycopy(json, 0, bytes, 1, json.length);
+
+        DishVO restored = (DishVO) serializer.deserialize(bytes);
+        assertThat(restored.getUpdateTime()).isEqualTo(LocalDateTime.of(2024, 5, 1, 12, 30));
+    }
+
+    @Test
+    void readsJdkSerializedPayload() {
+        LocalDateTime updateTime = LocalDateTime.of(2024, 5, 1, 12, 30, 45);
+        byte[] bytes = new JdkSerializationRedisSerializer().serialize(dish(updateTime));
+        assertThat(bytes[0]).isEqualTo((byte) 0xAC);
+
+        DishVO restored = (DishVO) serializer.deserialize(bytes);
+        assertThat(restored.getUpdateTime()).isEqualTo(updateTime);
+        assertThat(restored.getName()).isEqualTo("宫保鸡丁");
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] bytes = serializer.serialize(dish(LocalDateTime.now()));
+        bytes[0] = 99;
+
+        assertThatThrownBy(() -> serializer.deserialize(bytes)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reportsPayloadSizeAgainstJdkSerialization() {
+        List<DishVO> dishes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            dishes.add(dish(LocalDateTime.of(2024, 5, 1, 12, 30, 45)));
+        }
+        byte[] jackson = serializer.serialize(dishes);
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(dishes);
+        // 列表中每个元素都带@class，同类对象较多时体积可能大于JDK序列化（JDK只写一次类描述），这里只记录对比结果
+        System.out.printf("20道菜品的value大小：jackson=%d字节，jdk=%d字节%n", jackson.length, jdk.length);
+
+        assertThat((List<DishVO>) serializer.deserialize(jackson)).isEqualTo(serializer.deserialize(jdk));
+    }
+
+    private static DishVO dish(LocalDateTime updateTime) {
+        DishFlavor flavor = new DishFlavor();
+        flavor.setName("辣度");
+        flavor.setValue("[\"不辣\",\"微辣\"]");
+        DishVO dish = new DishVO();
+        dish.setId(1L);
+        dish.setName("宫保鸡丁");
+        dish.setPrice(new BigDecimal("28.00"));
+        dish.setUpdateTime(updateTime);
+        dish.setFlavors(new ArrayList<>(List.of(flavor)));
+        return dish;
+    }
+}
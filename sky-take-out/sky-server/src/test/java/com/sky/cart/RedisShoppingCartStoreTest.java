@@ -0,0 +1,238 @@
+package com.sky.cart;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.mapper.ShoppingCartMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: RedisShoppingCartStoreTest
+ * Package: com.sky.cart
+ * Description: Redis购物车的测试，使用内嵌Redis
+ * 不存在和已停售的商品不能加入购物车，再来一单不修改调用方的对象；
+ * 压测对比Redis购物车与数据库购物车加购的QPS，数据库以固定延迟的桩代替，同一用户的购物车行加锁串行，连接池大小为10
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class RedisShoppingCartStoreTest {
+
+    private static final int CONCURRENCY = 100;
+    private static final int ADDS_PER_THREAD = 50;
+    private static final int USERS = 20;
+    // 模拟的单条SQL耗时，以及连接池大小（与Hikari默认值一致）
+    private static final long STATEMENT_MILLIS = 2;
+    private static final int POOL_SIZE = 10;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private DishMapper dishMapper;
+    private SetmealMapper setmealMapper;
+    private RedisShoppingCartStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        dishMapper = mock(DishMapper.class, withSettings().stubOnly());
+        when(dishMapper.getById(1L)).thenReturn(Dish.builder().id(1L).name("宫保鸡丁").image("dish.png")
+                .price(new BigDecimal("28")).status(StatusConstant.ENABLE).build());
+        when(dishMapper.getById(2L)).thenReturn(Dish.builder().id(2L).name("水煮鱼").image("fish.png")
+                .price(new BigDecimal("48")).status(StatusConstant.DISABLE).build());
+        setmealMapper = mock(SetmealMapper.class, withSettings().stubOnly());
+        when(setmealMapper.getById(1L)).thenReturn(Setmeal.builder().id(1L).name("双人套餐").image("setmeal.png")
+                .price(new BigDecimal("88")).status(StatusConstant.ENABLE).build());
+
+        store = new RedisShoppingCartStore();
+        ReflectionTestUtils.setField(store, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(store, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(store, "setmealMapper", setmealMapper);
+        ReflectionTestUtils.setField(store, "ttlDays", 7L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void addsAndSubtractsGoods() {
+        store.add(1L, dish(1L, "不辣"));
+        store.add(1L, dish(1L, "不辣"));
+        store.add(1L, setmeal(1L));
+        store.sub(1L, setmeal(1L));
+
+        List<ShoppingCart> shoppingCartList = store.list(1L);
+        assertThat(shoppingCartList).hasSize(1);
+        assertThat(shoppingCartList.get(0).getName()).isEqualTo("宫保鸡丁");
+        assertThat(shoppingCartList.get(0).getNumber()).isEqualTo(2);
+        assertThat(shoppingCartList.get(0).getAmount()).isEqualByComparingTo("28");
+    }
+
+    @Test
+    void rejectsDeletedGoods() {
+        assertThatThrownBy(() -> store.add(1L, dish(3L, null)))
+                .isInstanceOf(ShoppingCartBusinessException.class)
+                .hasMessage(MessageConstant.GOODS_NOT_FOUND);
+        assertThatThrownBy(() -> store.add(1L, setmeal(3L)))
+                .isInstanceOf(ShoppingCartBusinessException.class)
+                .hasMessage(MessageConstant.GOODS_NOT_FOUND);
+        assertThat(store.list(1L)).isEmpty();
+    }
+
+    @Test
+    void rejectsDisabledGoods() {
+        assertThatThrownBy(() -> store.add(1L, dish(2L, null)))
+                .isInstanceOf(ShoppingCartBusinessException.class)
+                .hasMessage(MessageConstant.GOODS_DISABLED);
+        assertThat(store.list(1L)).isEmpty();
+    }
+
+    @Test
+    void addAllDoesNotModifyCallerItems() {
+        ShoppingCart shoppingCart = ShoppingCart.builder().id(10L).userId(2L).dishId(1L).dishFlavor("不辣")
+                .name("宫保鸡丁").amount(new BigDecimal("28")).number(3).build();
+
+        store.addAll(1L, Arrays.asList(shoppingCart));
+
+        assertThat(shoppingCart.getId()).isEqualTo(10L);
+        assertThat(shoppingCart.getUserId()).isEqualTo(2L);
+        assertThat(shoppingCart.getNumber()).isEqualTo(3);
+        List<ShoppingCart> shoppingCartList = store.list(1L);
+        assertThat(shoppingCartList).hasSize(1);
+        assertThat(shoppingCartList.get(0).getId()).isNull();
+        assertThat(shoppingCartList.get(0).getUserId()).isEqualTo(1L);
+        assertThat(shoppingCartList.get(0).getNumber()).isEqualTo(3);
+    }
+
+    @Test
+    void addQpsAgainstDatabaseStore() throws Exception {
+        // 预热，排除JIT编译和Lua脚本首次加载的影响
+        addUnderConcurrency(store);
+        stringRedisTemplate.getConnectionFactory().getConnection().flushAll();
+        double redisQps = addUnderConcurrency(store);
+        double databaseQps = addUnderConcurrency(newDatabaseStore());
+        System.out.printf("shoppingCart add: %d adds, %d threads, redis=%.0f adds/s, db=%.0f adds/s, %.1fx%n",
+                CONCURRENCY * ADDS_PER_THREAD, CONCURRENCY, redisQps, databaseQps, redisQps / databaseQps);
+
+        for (long userId = 0; userId < USERS; userId++) {
+            int total = store.list(userId).stream().mapToInt(ShoppingCart::getNumber).sum();
+            assertThat(total).isEqualTo(CONCURRENCY / USERS * ADDS_PER_THREAD);
+        }
+        assertThat(redisQps).isGreaterThan(databaseQps);
+    }
+
+    /**
+     * 每个线程对应一个用户，USERS个用户同时反复点击加购同一道菜品
+     */
+    private static double addUnderConcurrency(ShoppingCartStore shoppingCartStore) throws Exception {
+        ShoppingCartDTO shoppingCartDTO = dish(1L, "不辣");
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < CONCURRENCY; t++) {
+            long userId = t % USERS;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    shoppingCartStore.add(userId, shoppingCartDTO);
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return CONCURRENCY * ADDS_PER_THREAD * 1e9 / elapsed;
+    }
+
+    /**
+     * 数据库购物车：每次加购占用一个连接，同一用户的购物车行在更新期间加锁
+     */
+    private static DatabaseShoppingCartStore newDatabaseStore() {
+        Semaphore connections = new Semaphore(POOL_SIZE);
+        Object[] rowLocks = new Object[USERS];
+        for (int i = 0; i < USERS; i++) {
+            rowLocks[i] = new Object();
+        }
+        ShoppingCartMapper shoppingCartMapper = mock(ShoppingCartMapper.class, withSettings().stubOnly());
+        when(shoppingCartMapper.upsertDish(anyLong(), anyLong(), anyString())).thenAnswer(invocation -> {
+            connections.acquireUninterruptibly();
+            try {
+                synchronized (rowLocks[invocation.<Long>getArgument(0).intValue()]) {
+                    Thread.sleep(STATEMENT_MILLIS);
+                }
+                return 1;
+            } finally {
+                connections.release();
+            }
+        });
+
+        DatabaseShoppingCartStore databaseStore = new DatabaseShoppingCartStore();
+        ReflectionTestUtils.setField(databaseStore, "shoppingCartMapper", shoppingCartMapper);
+        return databaseStore;
+    }
+
+    private static ShoppingCartDTO dish(Long dishId, String dishFlavor) {
+        ShoppingCartDTO shoppingCartDTO = new ShoppingCartDTO();
+        shoppingCartDTO.setDishId(dishId);
+        shoppingCartDTO.setDishFlavor(dishFlavor);
+        return shoppingCartDTO;
+    }
+
+    private static ShoppingCartDTO setmeal(Long setmealId) {
+        ShoppingCartDTO shoppingCartDTO = new ShoppingCartDTO();
+        shoppingCartDTO.setSetmealId(setmealId);
+        return shoppingCartDTO;
+    }
+}
@@ -0,0 +1,127 @@
+package com.sky.lease;
+
+import com.sky.mapper.JobFenceMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: JobLeaseManagerTest
+ * Package: com.sky.lease
+ * Description: 任务租约的fencing token测试，使用内嵌Redis
+ * 租约过期被其他节点接管后，旧持有者即使没有再续期，其写入也会因token较小被拒绝
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class JobLeaseManagerTest {
+
+    private static final String JOB = "order-timeout-recover";
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    // 以Map模拟job_fence表
+    private final Map<String, Long> fences = new ConcurrentHashMap<>();
+    private JobLeaseManager jobLeaseManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        JobFenceMapper jobFenceMapper = mock(JobFenceMapper.class, withSettings().stubOnly());
+        when(jobFenceMapper.getTokenForUpdate(anyString())).thenAnswer(invocation -> fences.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> fences.putIfAbsent(invocation.getArgument(0), 0L))
+                .when(jobFenceMapper).insertIgnore(anyString());
+        doAnswer(invocation -> fences.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(jobFenceMapper).updateToken(anyString(), anyLong());
+
+        jobLeaseManager = new JobLeaseManager();
+        ReflectionTestUtils.setField(jobLeaseManager, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(jobLeaseManager, "jobFenceMapper", jobFenceMapper);
+        ReflectionTestUtils.setField(jobLeaseManager, "transactionTemplate", new TransactionTemplate(new NoopTransactionManager()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void leaseIsExclusiveAndTokensIncrease() {
+        JobLease first = jobLeaseManager.tryAcquire(JOB, TTL);
+        assertThat(first).isNotNull();
+        assertThat(jobLeaseManager.tryAcquire(JOB, TTL)).isNull();
+
+        jobLeaseManager.release(first);
+        JobLease second = jobLeaseManager.tryAcquire(JOB, TTL);
+        assertThat(second.getToken()).isGreaterThan(first.getToken());
+    }
+
+    @Test
+    void rejectsWritesFromTakenOverLease() {
+        AtomicInteger writes = new AtomicInteger();
+        JobLease stale = jobLeaseManager.tryAcquire(JOB, TTL);
+        assertThat(jobLeaseManager.writeFenced(stale, writes::incrementAndGet)).isEqualTo(1);
+
+        // 旧持有者停顿期间租约过期，被其他节点接管并写入
+        stringRedisTemplate.delete("job:lease:" + JOB);
+        JobLease current = jobLeaseManager.tryAcquire(JOB, TTL);
+        assertThat(jobLeaseManager.writeFenced(current, writes::incrementAndGet)).isEqualTo(2);
+
+        // 旧持有者恢复后直接写入，不经过续期检查也会被拒绝
+        assertThat(jobLeaseManager.writeFenced(stale, writes::incrementAndGet)).isNull();
+        assertThat(writes.get()).isEqualTo(2);
+        assertThat(fences.get(JOB)).isEqualTo(current.getToken());
+    }
+
+    private static class NoopTransactionManager implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.sky.lease;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ClassName: WorkerIdLeaseManagerTest
+ * Package: com.sky.lease
+ * Description: 节点id租约测试，自增计数器回绕后也不会分配到存活节点正在使用的节点id
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class WorkerIdLeaseManagerTest {
+
+    // 以Map模拟Redis中的SET NX
+    private final Map<String, String> leases = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final StringRedisTemplate stringRedisTemplate = newRedisTemplate();
+
+    @Test
+    void skipsWorkerIdsHeldByLiveNodes() {
+        long first = newManager().acquire();
+        // 计数器回绕到已被占用的节点id
+        seq.set(first - 1);
+        long second = newManager().acquire();
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(leases).hasSize(2);
+    }
+
+    @Test
+    void failsWhenAllWorkerIdsAreHeld() {
+        for (int i = 0; i < 1024; i++) {
+            newManager().acquire();
+        }
+        assertThatThrownBy(() -> newManager().acquire()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private WorkerIdLeaseManager newManager() {
+        WorkerIdLeaseManager manager = new WorkerIdLeaseManager();
+        ReflectionTestUtils.setField(manager, "stringRedisTemplate", stringRedisTemplate);
+        return manager;
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate newRedisTemplate() {
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.increment(anyString())).thenAnswer(invocation -> seq.incrementAndGet());
+        when(valueOperations.setIfAbsent(anyString(), anyString(), eq(Duration.ofMinutes(1))))
+                .thenAnswer(invocation -> leases.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        when(template.opsForValue()).thenReturn(valueOperations);
+        return template;
+    }
+}
@@ -0,0 +1,58 @@
+package com.sky.service.impl;
+
+import com.sky.mapper.OrderMapper;
+import com.sky.vo.OrderStatisticsVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ClassName: OrderCounterServiceImplTest
+ * Package: com.sky.service.impl
+ * Description: 计数器不存在时statistics()对账一次，并直接返回从数据库读到的数量
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class OrderCounterServiceImplTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statisticsReturnsReconciledCountsWhenCounterIsMissing() {
+        // 计数器写入后仍然读不到（例如被并发删除），不能反复对账
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Arrays.asList(null, null, null));
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+
+        OrderStatisticsVO statistics = new OrderStatisticsVO();
+        statistics.setToBeConfirmed(3);
+        statistics.setConfirmed(2);
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        when(orderMapper.statistics()).thenReturn(statistics);
+
+        OrderCounterServiceImpl orderCounterService = new OrderCounterServiceImpl();
+        ReflectionTestUtils.setField(orderCounterService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(orderCounterService, "orderMapper", orderMapper);
+
+        OrderStatisticsVO orderStatisticsVO = orderCounterService.statistics();
+
+        assertThat(orderStatisticsVO.getToBeConfirmed()).isEqualTo(3);
+        assertThat(orderStatisticsVO.getConfirmed()).isEqualTo(2);
+        assertThat(orderStatisticsVO.getDeliveryInProgress()).isEqualTo(0);
+        verify(orderMapper, times(1)).statistics();
+        verify(hashOperations, times(1)).putAll(anyString(), anyMap());
+    }
+}
@@ -0,0 +1,226 @@
+package com.sky.service.impl;
+
+import com.sky.cart.ShoppingCartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.GoodsPriceDTO;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.BaiduMapProperties;
+import com.sky.service.BusinessRollupService;
+import com.sky.service.OrderTimeoutService;
+import com.sky.service.PriceSnapshotService;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.vo.OrderSubmitVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: OrderSubmitLoadTest
+ * Package: com.sky.service.impl
+ * Description: 下单流程压测，500个并发线程同时提交订单，输出p50/p99耗时；以及打包费、总金额与服务端不一致时拒绝下单
+ * 数据库以固定延迟的桩代替，事务管理器用一个信号量模拟连接池，事务越短，连接等待越少，尾延迟越低
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class OrderSubmitLoadTest {
+
+    private static final int CONCURRENCY = 500;
+    private static final int SUBMITS_PER_THREAD = 4;
+    // 模拟的单条SQL耗时，以及连接池大小（与Hikari默认值一致）
+    private static final long STATEMENT_MILLIS = 2;
+    private static final int POOL_SIZE = 10;
+
+    @Test
+    void submitOrderUnderConcurrency() throws Exception {
+        OrderServiceImpl orderService = newOrderService();
+        OrdersSubmitDTO ordersSubmitDTO = newSubmitDTO(new BigDecimal("4"), new BigDecimal("154"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] latencies = new long[CONCURRENCY * SUBMITS_PER_THREAD];
+        Set<String> orderNumbers = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < CONCURRENCY; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                BaseContext.setCurrentId((long) thread);
+                start.await();
+                for (int i = 0; i < SUBMITS_PER_THREAD; i++) {
+                    long begin = System.nanoTime();
+                    OrderSubmitVO vo = orderService.submitOrder(ordersSubmitDTO);
+                    latencies[thread * SUBMITS_PER_THREAD + i] = System.nanoTime() - begin;
+                    orderNumbers.add(vo.getOrderNumber());
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("submitOrder: %d submits, %d threads, %.0f submits/s, p50=%.2fms, p99=%.2fms, max=%.2fms%n",
+                latencies.length, CONCURRENCY, latencies.length * 1e9 / elapsed,
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+
+        assertThat(orderNumbers).hasSize(latencies.length);
+    }
+
+    @Test
+    void rejectsPackAmountOrAmountMismatch() {
+        OrderServiceImpl orderService = newOrderService();
+        BaseContext.setCurrentId(1L);
+
+        // 2份菜品 × (28 + 打包费1) + 1份套餐 × (88 + 打包费2) + 配送费6 = 154
+        assertThatThrownBy(() -> orderService.submitOrder(newSubmitDTO(new BigDecimal("3"), new BigDecimal("154"))))
+                .isInstanceOf(OrderBusinessException.class)
+                .hasMessage(MessageConstant.ORDER_AMOUNT_CHANGED);
+        assertThatThrownBy(() -> orderService.submitOrder(newSubmitDTO(new BigDecimal("4"), new BigDecimal("150"))))
+                .isInstanceOf(OrderBusinessException.class)
+                .hasMessage(MessageConstant.ORDER_AMOUNT_CHANGED);
+
+        OrderSubmitVO vo = orderService.submitOrder(newSubmitDTO(new BigDecimal("4.00"), new BigDecimal("154.00")));
+        assertThat(vo.getOrderAmount()).isEqualByComparingTo("154");
+    }
+
+    private static OrdersSubmitDTO newSubmitDTO(BigDecimal packAmount, BigDecimal amount) {
+        OrdersSubmitDTO ordersSubmitDTO = new OrdersSubmitDTO();
+        ordersSubmitDTO.setAddressBookId(1L);
+        ordersSubmitDTO.setPackAmount(packAmount);
+        ordersSubmitDTO.setAmount(amount);
+        return ordersSubmitDTO;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.ceil(p * sorted.length) - 1];
+    }
+
+    private OrderServiceImpl newOrderService() {
+        AddressBookMapper addressBookMapper = mock(AddressBookMapper.class, withSettings().stubOnly());
+        when(addressBookMapper.getById(anyLong())).thenReturn(AddressBook.builder()
+                .id(1L).consignee("张三").phone("13800000000").build());
+
+        ShoppingCartStore shoppingCartStore = mock(ShoppingCartStore.class, withSettings().stubOnly());
+        when(shoppingCartStore.list(anyLong())).thenReturn(Arrays.asList(
+                new ShoppingCart().setDishId(1L).setDishFlavor("不辣").setNumber(2),
+                new ShoppingCart().setSetmealId(1L).setNumber(1)));
+
+        PriceSnapshotService priceSnapshotService = mock(PriceSnapshotService.class, withSettings().stubOnly());
+        when(priceSnapshotService.listDishPrices()).thenReturn(Collections.singletonList(
+                new GoodsPriceDTO(1L, "宫保鸡丁", "dish.png", new BigDecimal("28"), new BigDecimal("1"), 1)));
+        when(priceSnapshotService.listSetmealPrices()).thenReturn(Collections.singletonList(
+                new GoodsPriceDTO(1L, "双人套餐", "setmeal.png", new BigDecimal("88"), new BigDecimal("2"), 1)));
+
+        AtomicLong ids = new AtomicLong();
+        OrderMapper orderMapper = mock(OrderMapper.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            sleep(STATEMENT_MILLIS);
+            invocation.<Orders>getArgument(0).setId(ids.incrementAndGet());
+            return null;
+        }).when(orderMapper).insert(any());
+        OrderDetailMapper orderDetailMapper = mock(OrderDetailMapper.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            sleep(STATEMENT_MILLIS);
+            return null;
+        }).when(orderDetailMapper).insertBatch(any());
+        BusinessRollupService businessRollupService = mock(BusinessRollupService.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            sleep(STATEMENT_MILLIS);
+            return null;
+        }).when(businessRollupService).onOrderSubmitted(any());
+
+        OrderServiceImpl orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "addressBookMapper", addressBookMapper);
+        ReflectionTestUtils.setField(orderService, "shoppingCartStore", shoppingCartStore);
+        ReflectionTestUtils.setField(orderService, "priceSnapshotService", priceSnapshotService);
+        ReflectionTestUtils.setField(orderService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderService, "orderDetailMapper", orderDetailMapper);
+        ReflectionTestUtils.setField(orderService, "businessRollupService", businessRollupService);
+        ReflectionTestUtils.setField(orderService, "orderTimeoutService",
+                mock(OrderTimeoutService.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(orderService, "baiduMapProperties", new BaiduMapProperties());
+        ReflectionTestUtils.setField(orderService, "orderNumberGenerator", new SnowflakeIdGenerator(1));
+        ReflectionTestUtils.setField(orderService, "transactionTemplate",
+                new TransactionTemplate(new PooledTransactionManager(POOL_SIZE)));
+        ReflectionTestUtils.setField(orderService, "deliveryFee", new BigDecimal("6"));
+        return orderService;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 模拟连接池的事务管理器：开启事务时占用一个连接，提交或回滚时归还
+     */
+    private static class PooledTransactionManager implements PlatformTransactionManager {
+        private final Semaphore connections;
+
+        PooledTransactionManager(int poolSize) {
+            this.connections = new Semaphore(poolSize);
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            connections.acquireUninterruptibly();
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            connections.release();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            connections.release();
+        }
+    }
+}
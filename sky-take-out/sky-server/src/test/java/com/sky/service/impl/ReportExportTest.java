@@ -0,0 +1,176 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.BusinessDailyRollupMapper;
+import com.sky.mapper.OrderMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: ReportExportTest
+ * Package: com.sky.service.impl
+ * Description: 运营数据报表导出测试
+ * 大数据量：游标逐行产生30万条订单，在-Xmx256m（见sky-server/pom.xml的surefire配置）下完成导出，
+ * 一次性加载全部订单或使用XSSFWorkbook时会内存溢出；
+ * 写入失败：输出流抛出IOException时异常向上抛出，而不是返回一个不完整的文件
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class ReportExportTest {
+
+    private static final int ORDER_ROWS = 300_000;
+
+    @Test
+    void exportsLargeDatasetWithBoundedMemory() throws Exception {
+        GeneratedCursor cursor = new GeneratedCursor(ORDER_ROWS);
+        CountingOutputStream out = new CountingOutputStream(false);
+
+        newReportService(cursor).exportBusinessData(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31), response(out));
+
+        assertThat(cursor.getCurrentIndex()).isEqualTo(ORDER_ROWS - 1);
+        assertThat(cursor.isOpen()).isFalse();
+        assertThat(out.count).isPositive();
+        long usedHeap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        System.out.printf("导出%d条订单，文件%d字节，堆占用%dMB%n", ORDER_ROWS, out.count, usedHeap >> 20);
+    }
+
+    @Test
+    void propagatesWriteFailure() throws Exception {
+        GeneratedCursor cursor = new GeneratedCursor(1000);
+        CountingOutputStream out = new CountingOutputStream(true);
+
+        assertThatThrownBy(() -> newReportService(cursor)
+                .exportBusinessData(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), response(out)))
+                .isInstanceOf(IOException.class);
+    }
+
+    private ReportServiceImpl newReportService(Cursor<Orders> cursor) {
+        OrderMapper orderMapper = mock(OrderMapper.class, withSettings().stubOnly());
+        when(orderMapper.cursorByOrderTime(any(), any())).thenReturn(cursor);
+
+        ReportServiceImpl reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(reportService, "businessDailyRollupMapper",
+                mock(BusinessDailyRollupMapper.class, withSettings().stubOnly()));
+        return reportService;
+    }
+
+    private static HttpServletResponse response(ServletOutputStream out) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class, withSettings().stubOnly());
+        when(response.getOutputStream()).thenReturn(out);
+        return response;
+    }
+
+    /**
+     * 按需生成订单的游标，不在内存中保留已产生的订单
+     */
+    private static class GeneratedCursor implements Cursor<Orders> {
+        private final int total;
+        private int index = -1;
+        private boolean open = true;
+
+        GeneratedCursor(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return index >= total - 1;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return index;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public Iterator<Orders> iterator() {
+            return new Iterator<Orders>() {
+                @Override
+                public boolean hasNext() {
+                    return open && index < total - 1;
+                }
+
+                @Override
+                public Orders next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    index++;
+                    return Orders.builder()
+                            .number(String.valueOf(1794712081924481024L + index))
+                            .orderTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(index))
+                            .status(index % 6 + 1)
+                            .amount(new BigDecimal("58.00"))
+                            .consignee("收货人" + index)
+                            .phone("13800000000")
+                            .address("北京市海淀区上地十街" + index + "号")
+                            .build();
+                }
+            };
+        }
+    }
+
+    /**
+     * 只统计字节数的输出流，可以模拟写入失败（如客户端断开）
+     */
+    private static class CountingOutputStream extends ServletOutputStream {
+        private final boolean fail;
+        private long count;
+
+        CountingOutputStream(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ClassName: SnowflakeIdGeneratorTest
+ * Package: com.sky.utils
+ * Description: 雪花算法id生成器的并发唯一性测试
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 250_000;
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        long[][] ids = generate(generator, THREADS, IDS_PER_THREAD);
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            // 同一线程内严格递增
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                assertThat(ids[t][i]).isGreaterThan(ids[t][i - 1]);
+            }
+            System.arraycopy(ids[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).as("重复的id").isNotEqualTo(all[i - 1]);
+        }
+    }
+
+    @Test
+    void idsFromDifferentWorkersNeverCollide() throws Exception {
+        long[][] first = generate(new SnowflakeIdGenerator(1), 4, IDS_PER_THREAD);
+        long[][] second = generate(new SnowflakeIdGenerator(2), 4, IDS_PER_THREAD);
+
+        for (long[] ids : first) {
+            for (long id : ids) {
+                assertThat(workerId(id)).isEqualTo(1);
+            }
+        }
+        for (long[] ids : second) {
+            for (long id : ids) {
+                assertThat(workerId(id)).isEqualTo(2);
+            }
+        }
+    }
+
+    @Test
+    void rejectsWorkerIdOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_WORKER_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long workerId(long id) {
+        return (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_WORKER_ID;
+    }
+
+    private static long[][] generate(SnowflakeIdGenerator generator, int threads, int idsPerThread) throws Exception {
+        long[][] ids = new long[threads][idsPerThread];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] target = ids[t];
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < target.length; i++) {
+                    target[i] = generator.nextId();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        return ids;
+    }
+}
@@ -0,0 +1,190 @@
+package com.sky.websocket;
+
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * ClassName: WebSocketMessageBusIntegrationTest
+ * Package: com.sky.websocket
+ * Description: 跨节点消息总线的集成测试，使用内嵌Redis
+ * 两个节点各自使用独立的监听容器订阅同一个频道，验证合并发布的消息被两个节点的订阅者各收到且只收到一次，并保留路由信息
+ *
+ * @Author Rainbow
+ * @Version 1.0
+ */
+class WebSocketMessageBusIntegrationTest {
+
+    private static final String TOPIC = "sky:ws:test";
+    private static final int MESSAGES = 500;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+    private final List<WebSocketMessageBus> buses = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        buses.forEach(WebSocketMessageBus::destroy);
+        for (RedisMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void deliversEveryMessageToEveryNodeExactlyOnce() throws Exception {
+        Queue<String> node1 = new ConcurrentLinkedQueue<>();
+        Queue<String> node2 = new ConcurrentLinkedQueue<>();
+        WebSocketMessageBus bus1 = newBus(newContainer(), node1);
+        newBus(newContainer(), node2);
+        awaitSubscribers(2);
+
+        for (int i = 0; i < MESSAGES; i++) {
+            bus1.publish(String.valueOf(i % 3), WebSocketServer.ROLE_ADMIN, "order-" + i);
+        }
+
+        await(() -> node1.size() >= MESSAGES && node2.size() >= MESSAGES);
+        // 再等待一段时间，确认没有重复投递
+        Thread.sleep(300);
+        assertDeliveredOnce(node1);
+        assertDeliveredOnce(node2);
+        assertThat(node1).contains("1:admin:order-1", "2:admin:order-2", "0:admin:order-3");
+    }
+
+    @Test
+    void publishesQueuedMessagesInBatches() throws Exception {
+        // 统计频道上实际发布的Redis消息数
+        AtomicInteger redisMessages = new AtomicInteger();
+        RedisMessageListenerContainer counter = newContainer();
+        counter.addMessageListener((message, pattern) -> redisMessages.incrementAndGet(), new ChannelTopic(TOPIC));
+        Queue<String> subscriber = new ConcurrentLinkedQueue<>();
+        newBus(newContainer(), subscriber);
+        awaitSubscribers(2);
+
+        // 发布节点在发布线程启动前已经积压了全部消息，每批最多100条
+        WebSocketMessageBus publisher = new WebSocketMessageBus();
+        wire(publisher, mock(RedisMessageListenerContainer.class, withSettings().stubOnly()),
+                mock(WebSocketServer.class, withSettings().stubOnly()));
+        for (int i = 0; i < MESSAGES; i++) {
+            publisher.publish("1", WebSocketServer.ROLE_ADMIN, "order-" + i);
+        }
+        publisher.init();
+        buses.add(publisher);
+
+        await(() -> subscriber.size() >= MESSAGES);
+        Thread.sleep(300);
+        assertDeliveredOnce(subscriber);
+        assertThat(redisMessages.get()).isEqualTo(MESSAGES / 100);
+    }
+
+    private static void assertDeliveredOnce(Queue<String> received) {
+        assertThat(received).hasSize(MESSAGES);
+        assertThat(new HashSet<>(received)).hasSize(MESSAGES);
+    }
+
+    private RedisMessageListenerContainer newContainer() {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+        return container;
+    }
+
+    /**
+     * 创建一个节点的消息总线，本节点投递给会话的消息按 店铺:角色:消息 记录
+     */
+    private WebSocketMessageBus newBus(RedisMessageListenerContainer container, Queue<String> received) {
+        WebSocketServer webSocketServer = mock(WebSocketServer.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            received.add(invocation.getArgument(0) + ":" + invocation.getArgument(1) + ":" + invocation.getArgument(2));
+            return null;
+        }).when(webSocketServer).sendToSubscribers(anyString(), anyString(), anyString());
+
+        WebSocketMessageBus bus = new WebSocketMessageBus();
+        wire(bus, container, webSocketServer);
+        bus.init();
+        buses.add(bus);
+        return bus;
+    }
+
+    private void wire(WebSocketMessageBus bus, RedisMessageListenerContainer container, WebSocketServer webSocketServer) {
+        ReflectionTestUtils.setField(bus, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(bus, "redisMessageListenerContainer", container);
+        ReflectionTestUtils.setField(bus, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(bus, "topic", TOPIC);
+    }
+
+    /**
+     * 监听容器异步订阅，等待频道上的订阅者数量达到预期后再发布
+     */
+    @SuppressWarnings("unchecked")
+    private void awaitSubscribers(long expected) throws InterruptedException {
+        byte[] channel = TOPIC.getBytes(StandardCharsets.UTF_8);
+        await(() -> {
+            Map<byte[], Long> reply = stringRedisTemplate.execute((RedisCallback<Map<byte[], Long>>) connection -> {
+                RedisClusterAsyncCommands<byte[], byte[]> commands =
+                        (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+                try {
+                    return commands.pubsubNumsub(channel).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            return reply != null && reply.values().stream().mapToLong(Long::longValue).sum() >= expected;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("等待超时");
+            }
+            Thread.sleep(20);
+        }
+    }
+}